@@ -0,0 +1,30 @@
+package com.codecool.klondike;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, by default to
+ * {@code bench/results/jmh-result.json}, so runs of different builds can be compared.
+ * Any regular JMH command line options can be passed, e.g. a benchmark name pattern.
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_RESULT_FILE = "bench/results/jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String resultFile = commandLine.getResult().orElse(DEFAULT_RESULT_FILE);
+        new File(resultFile).getAbsoluteFile().getParentFile().mkdirs();
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build()).run();
+    }
+}
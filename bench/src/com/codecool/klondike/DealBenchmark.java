@@ -0,0 +1,84 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building decks, moving cards between piles and dealing a whole game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DealBenchmark {
+    private Pile source;
+    private Pile target;
+    private Card card;
+    private Game table;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HeadlessFx.start();
+        source = new Pile(Pile.PileType.TABLEAU, "Source", 30, KlondikeState.FIRST_TABLEAU);
+        target = new Pile(Pile.PileType.TABLEAU, "Target", 30, KlondikeState.FIRST_TABLEAU + 1);
+        card = new Card(1, 13, false);
+        source.addCard(card);
+        table = new Game();
+    }
+
+    @Benchmark
+    public List<Card> createNewDeck() {
+        return Card.createNewDeck();
+    }
+
+    /**
+     * One card moved to another pile and back, as {@code Card.moveToPile} does it
+     */
+    @Benchmark
+    public Card pileAddAndRemoveCard() {
+        source.removeCard(card);
+        target.addCard(card);
+        target.removeCard(card);
+        source.addCard(card);
+        return card;
+    }
+
+    /**
+     * A full new game: deck, shuffle, piles, menu and deal
+     */
+    @Benchmark
+    public Game newGame() {
+        return new Game();
+    }
+
+    /**
+     * A new game dealt on the same table, reusing its cards and piles, as File > New Game does
+     */
+    @Benchmark
+    public Game newGameInPlace() {
+        table.newGame(seed++);
+        return table;
+    }
+
+    @Benchmark
+    public KlondikeState dealState() {
+        return DealGenerator.deal(seed++);
+    }
+}
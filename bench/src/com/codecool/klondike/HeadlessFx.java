@@ -0,0 +1,42 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.model.KlondikeState;
+import javafx.application.Platform;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Starts the JavaFX toolkit on the headless Monocle platform, so benchmarks can create
+ * and lay out real nodes without a display.
+ */
+final class HeadlessFx {
+    private static boolean started;
+
+    private HeadlessFx() {
+    }
+
+    static synchronized void start() {
+        if (started) {
+            return;
+        }
+        System.setProperty("glass.platform", "Monocle");
+        System.setProperty("monocle.platform", "Headless");
+        System.setProperty("prism.order", "sw");
+        System.setProperty("prism.text", "t2k");
+        CountDownLatch placeholderRendered = new CountDownLatch(1);
+        Platform.startup(() -> {
+            // The shared pile placeholder is rendered by a snapshot, which only works on
+            // the FX thread; benchmark threads then build piles with the cached image.
+            new Pile(Pile.PileType.TABLEAU, "Warm-up", 0, KlondikeState.FIRST_TABLEAU).setBlurredBackground();
+            placeholderRendered.countDown();
+        });
+        Card.loadCardImages();
+        try {
+            placeholderRendered.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting JavaFX", e);
+        }
+        started = true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.perf.Histogram;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Starts many games in a row on the FX thread, once building a new {@link Game} and scene
+ * for each as the game used to, once redealing one table in place with
+ * {@link Game#newGame(long)}, and prints the latency of a new game and the heap still in
+ * use after every hundred of them. Redealing in place must keep the heap flat.
+ * Usage: {@code NewGameSoak [games]}
+ */
+public class NewGameSoak {
+    private static final int REPORT_EVERY = 100;
+
+    private static Scene scene;
+    private static Game table;
+
+    public static void main(String[] args) throws Exception {
+        HeadlessFx.start();
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        onFxThread(() -> {
+            table = new Game(0);
+            scene = Klondike.createScene(table);
+        });
+        run("Rebuilt", games, seed -> scene = Klondike.createScene(new Game(seed)));
+        onFxThread(() -> scene = table.getScene());
+        run("In place", games, seed -> table.newGame(seed));
+        System.exit(0);
+    }
+
+    private interface NewGame {
+        void start(long seed);
+    }
+
+    private static void run(String name, int games, NewGame newGame) throws Exception {
+        Histogram latency = new Histogram();
+        long baseline = usedHeapAfterGc();
+        System.out.printf("%s: %.1f MB in use before%n", name, baseline / 1e6);
+        for (int game = 1; game <= games; game++) {
+            long seed = game;
+            onFxThread(() -> {
+                long start = System.nanoTime();
+                newGame.start(seed);
+                latency.record(System.nanoTime() - start);
+            });
+            if (game % REPORT_EVERY == 0) {
+                long used = usedHeapAfterGc();
+                System.out.printf("%s: %5d games, %+.2f MB retained, latency p50 %.3f ms, p99 %.3f ms%n", name, game,
+                        (used - baseline) / 1e6, latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6);
+            }
+        }
+        System.out.printf("%s: mean %.3f ms, max %.3f ms over %d games%n",
+                name, latency.getMean() / 1e6, latency.getMax() / 1e6, latency.getTotalCount());
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void onFxThread(Runnable task) throws InterruptedException, ExecutionException {
+        FutureTask<Void> future = new FutureTask<>(task, null);
+        Platform.runLater(future);
+        future.get();
+    }
+}
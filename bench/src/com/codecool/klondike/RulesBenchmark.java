@@ -0,0 +1,161 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.model.CardIds;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+import com.codecool.klondike.model.RuleTables;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-move cost of the rule checks on a dealt {@link Game}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RulesBenchmark {
+    private Game game;
+    private List<Pile> tableauPiles;
+    private Card[] topCards;
+    private Card draggedCard;
+    private Card red;
+    private Card black;
+    private KlondikeState state;
+    private int[] tableauMoves;
+    private int[] cardIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HeadlessFx.start();
+        game = new Game();
+        tableauPiles = new ArrayList<>();
+        for (int i = 0; i < KlondikeState.TABLEAU_COUNT; i++) {
+            tableauPiles.add(game.getPile(KlondikeState.FIRST_TABLEAU + i));
+        }
+        topCards = new Card[tableauPiles.size()];
+        for (int i = 0; i < topCards.length; i++) {
+            topCards[i] = tableauPiles.get(i).getTopCard();
+        }
+        draggedCard = topCards[0];
+        draggedCard.setTranslateX(tableauPiles.get(1).getLayoutX() - tableauPiles.get(0).getLayoutX() - 20);
+        draggedCard.setTranslateY(tableauPiles.get(1).getTopCard().getLayoutY() - draggedCard.getLayoutY() + 10);
+        red = new Card(1, 5, false);
+        black = new Card(3, 6, false);
+
+        state = game.getState();
+        tableauMoves = new int[KlondikeState.TABLEAU_COUNT * KlondikeState.TABLEAU_COUNT];
+        for (int from = 0; from < KlondikeState.TABLEAU_COUNT; from++) {
+            for (int to = 0; to < KlondikeState.TABLEAU_COUNT; to++) {
+                tableauMoves[from * KlondikeState.TABLEAU_COUNT + to] =
+                        Moves.of(KlondikeState.FIRST_TABLEAU + from, KlondikeState.FIRST_TABLEAU + to, 1);
+            }
+        }
+        cardIds = new int[CardIds.DECK_SIZE];
+        for (int i = 0; i < cardIds.length; i++) {
+            cardIds[i] = i;
+        }
+        Random random = new Random(1);
+        for (int i = cardIds.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = cardIds[i];
+            cardIds[i] = cardIds[j];
+            cardIds[j] = swap;
+        }
+    }
+
+    /**
+     * Every tableau top card against every tableau pile, the checks made on one release
+     */
+    @Benchmark
+    public void isMoveValid(Blackhole blackhole) {
+        for (Card card : topCards) {
+            for (Pile pile : tableauPiles) {
+                blackhole.consume(game.isMoveValid(card, pile));
+            }
+        }
+    }
+
+    /**
+     * The same 49 checks on the headless state, without the pile lookups of the UI
+     */
+    @Benchmark
+    public void stateIsMoveValid(Blackhole blackhole) {
+        for (int move : tableauMoves) {
+            blackhole.consume(state.isMoveValid(move));
+        }
+    }
+
+    /**
+     * The tableau rule for all 52 x 52 pairs of cards, worked out from the card ids each
+     * time as before the rule tables
+     */
+    @Benchmark
+    public int tableauRuleComputed() {
+        int accepted = 0;
+        for (int top : cardIds) {
+            for (int card : cardIds) {
+                if (CardIds.rank(card) + 1 == CardIds.rank(top) && CardIds.isRed(card) != CardIds.isRed(top)) {
+                    accepted++;
+                }
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * The tableau rule for all 52 x 52 pairs of cards, looked up in {@link RuleTables}
+     */
+    @Benchmark
+    public int tableauRuleTable() {
+        int accepted = 0;
+        for (int top : cardIds) {
+            for (int card : cardIds) {
+                if (RuleTables.canPlayOnTableau(card, top)) {
+                    accepted++;
+                }
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Drop target lookup for a card dragged over the second tableau, done on every drag event
+     */
+    @Benchmark
+    public Pile findDropTarget() {
+        return game.findDropTarget(draggedCard);
+    }
+
+    @Benchmark
+    public boolean isGameDecided() {
+        return game.isGameDecided();
+    }
+
+    @Benchmark
+    public boolean isOppositeColor() {
+        return Card.isOppositeColor(red, black);
+    }
+
+    @Benchmark
+    public boolean isSameSuit() {
+        return Card.isSameSuit(red, black);
+    }
+}
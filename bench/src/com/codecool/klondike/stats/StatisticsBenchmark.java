@@ -0,0 +1,102 @@
+package com.codecool.klondike.stats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding the statistics from a log that was never compacted, through the mapped scan
+ * of {@link StatisticsStore} and, for comparison, through a buffered stream decoding one
+ * {@link GameRecord} at a time; and the queries the statistics screen makes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+    @Param({"1000000"})
+    public int games;
+
+    private Path directory;
+    private Path logFile;
+    private Statistics statistics;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("klondike-stats");
+        logFile = directory.resolve("stats.log");
+        Random random = new Random(1);
+        ByteBuffer buffer = ByteBuffer.allocate(StatisticsStore.HEADER_SIZE + games * GameRecord.SIZE);
+        buffer.putInt(StatisticsStore.MAGIC).putInt(StatisticsStore.VERSION).putLong(0);
+        long time = 1_600_000_000_000L;
+        for (int i = 0; i < games; i++) {
+            boolean won = random.nextInt(3) == 0;
+            time += 60_000 + random.nextInt(600_000);
+            new GameRecord(time, random.nextLong(), 60_000 + random.nextInt(900_000),
+                    80 + random.nextInt(120), won ? 52 : random.nextInt(40), won).encode(buffer);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        statistics = StatisticsStore.read(logFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Statistics rebuildMapped() throws IOException {
+        return StatisticsStore.read(logFile);
+    }
+
+    @Benchmark
+    public Statistics rebuildStreamed() throws IOException {
+        Statistics rebuilt = new Statistics();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            in.skipNBytes(StatisticsStore.HEADER_SIZE);
+            byte[] record = new byte[GameRecord.SIZE];
+            ByteBuffer wrapped = ByteBuffer.wrap(record);
+            for (int i = 0; i < games; i++) {
+                in.readFully(record);
+                wrapped.clear();
+                rebuilt.add(GameRecord.decode(wrapped));
+            }
+        }
+        return rebuilt;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String statisticsScreen() {
+        return statistics.describe();
+    }
+}
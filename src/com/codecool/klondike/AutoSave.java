@@ -0,0 +1,144 @@
+package com.codecool.klondike;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the running game in a file so it survives closing the window.
+ *
+ * {@link #save} only encodes the game, which takes microseconds, and hands the bytes to a
+ * single background writer; the FX thread never waits for the disk. The writer writes a
+ * temporary file through a {@link FileChannel} and renames it over the save file, so the
+ * file always holds one complete game. When moves come faster than the disk, the writer
+ * skips straight to the newest game.
+ */
+public class AutoSave {
+    public static final Path DEFAULT_FILE = Paths.get(System.getProperty("user.home"), ".klondike", "autosave.bin");
+
+    private static final int REPORT_EVERY = 100;
+
+    private final Path file;
+    private final AtomicReference<ByteBuffer> pending = new AtomicReference<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long saves;
+    private volatile long encodes;
+    private volatile long encodeNanos;
+    private long writeNanos;
+
+    public AutoSave(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Schedules the game to be written; returns without touching the disk.
+     */
+    public void save(SavedGame game) {
+        long start = System.nanoTime();
+        ByteBuffer bytes = game.encode();
+        encodeNanos += System.nanoTime() - start;
+        encodes++;
+        if (pending.getAndSet(bytes) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * Forgets the saved game, e.g. once it has been won.
+     */
+    public void delete() {
+        pending.set(null);
+        writer.execute(() -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Could not delete the saved game: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return the saved game, or null if there is none or it cannot be read
+     */
+    public SavedGame restore() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("File shrank while reading it");
+                }
+            }
+            buffer.flip();
+            SavedGame game = SavedGame.decode(buffer);
+            System.out.printf("Restored saved game (%d moves) in %.2f ms%n",
+                    game.getMoveCount(), (System.nanoTime() - start) / 1e6);
+            return game;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable saved game: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes out the last game scheduled, waiting at most the given time for the disk.
+     */
+    public void close(long timeout, TimeUnit unit) {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writePending() {
+        ByteBuffer bytes = pending.getAndSet(null);
+        if (bytes == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save the game: " + e.getMessage());
+            return;
+        }
+        report(System.nanoTime() - start);
+    }
+
+    private synchronized void report(long nanos) {
+        saves++;
+        writeNanos += nanos;
+        if (saves == 1 || saves % REPORT_EVERY == 0) {
+            System.out.printf("Autosave #%d: %.2f ms to write, %.2f ms average; %.1f us average to encode%n",
+                    saves, nanos / 1e6, writeNanos / 1e6 / saves, encodeNanos / 1e3 / encodes);
+        }
+    }
+}
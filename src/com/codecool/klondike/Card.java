@@ -1,7 +1,8 @@
 package com.codecool.klondike;
 
+import com.codecool.klondike.model.CardIds;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.paint.Color;
 
@@ -12,75 +13,68 @@ public class Card extends ImageView {
 
     enum ranks {ACE, TWO, THREE, FOUR, FIVE, SIX, SEVEN, EIGHT, NINE, TEN, JACK, QUEEN, KING}
 
-    private int suit;
-    private int rank;
+    private final int id;
     private boolean faceDown;
-    private String color;
 
-
-    private Image backFace;
-    private Image frontFace;
+    private Rectangle2D backFace;
+    private Rectangle2D frontFace;
     private Pile containingPile;
 
-    public void setFinalDestPile(Pile finalDestPile) {
-        this.finalDestPile = finalDestPile;
-    }
-
-    public Pile getFinalDestPile() {
-        return finalDestPile;
-    }
-
-    private Pile finalDestPile;
     private DropShadow dropShadow;
+    private int animationSlot = -1;
 
-    static Image cardBackImage;
-    private static final Map<String, Image> cardFaceImages = new HashMap<>();
+    private static CardAtlas atlas;
     public static final int WIDTH = 150;
     public static final int HEIGHT = 215;
+    private static final String DEFAULT_BACK = "green";
 
     public Card(int suit, int rank, boolean faceDown) {
-        this.suit = suit;
-
-        if (suit == 1 || suit == 2) {
-            this.color = "red";
-        } else {
-            this.color = "black";
-        }
-
-        this.rank = rank;
+        this.id = CardIds.id(suit, rank);
         this.faceDown = faceDown;
-        this.dropShadow = new DropShadow(2, Color.gray(0, 0.75));
-        backFace = cardBackImage;
-        frontFace = cardFaceImages.get(getShortName());
-        setImage(faceDown ? backFace : frontFace);
-        setEffect(dropShadow);
+        this.dropShadow = new DropShadow(TableEffects.REST_SHADOW_RADIUS, Color.gray(0, 0.75));
+        backFace = atlas.getBackViewport(DEFAULT_BACK);
+        frontFace = atlas.getFaceViewport(id);
+        setImage(atlas.getImage());
+        setViewport(faceDown ? backFace : frontFace);
+        TableEffects.rest(this);
     }
 
-    public String getColor() {
-        return color;
+    public boolean isRed() {
+        return CardIds.isRed(id);
     }
 
-
     public int getSuit() {
-        return suit;
+        return CardIds.suit(id);
     }
 
     public int getRank() {
-        return rank;
+        return CardIds.rank(id);
     }
 
     public boolean isFaceDown() {
         return faceDown;
     }
 
+    public int getCardId() {
+        return id;
+    }
+
     public String getShortName() {
-        return "S" + suit + "R" + rank;
+        return CardIds.toString(id);
     }
 
     public DropShadow getDropShadow() {
         return dropShadow;
     }
 
+    int getAnimationSlot() {
+        return animationSlot;
+    }
+
+    void setAnimationSlot(int animationSlot) {
+        this.animationSlot = animationSlot;
+    }
+
     public Pile getContainingPile() {
         return containingPile;
     }
@@ -89,10 +83,14 @@ public class Card extends ImageView {
         this.containingPile = containingPile;
     }
 
-    public void setBackFace(Image backFace) {
+    public void setBackFace(Rectangle2D backFace) {
         this.backFace = backFace;
     }
 
+    public static Rectangle2D getBackViewport(String backName) {
+        return atlas.getBackViewport(backName);
+    }
+
     public void moveToPile(Pile destPile) {
         this.getContainingPile().getCards().remove(this);
         destPile.addCard(this);
@@ -100,20 +98,20 @@ public class Card extends ImageView {
 
     public void flip() {
         faceDown = !faceDown;
-        setImage(faceDown ? backFace : frontFace);
+        setViewport(faceDown ? backFace : frontFace);
     }
 
     @Override
     public String toString() {
-        return "The " + "Rank" + rank + " of " + "Suit" + suit;
+        return "The " + "Rank" + getRank() + " of " + "Suit" + getSuit();
     }
 
     public static boolean isOppositeColor(Card card1, Card card2) {
-        return card1.getColor().equals(card2.getColor());
+        return CardIds.isRed(card1.id) != CardIds.isRed(card2.id);
     }
 
     public static boolean isSameSuit(Card card1, Card card2) {
-        return card1.getSuit() == card2.getSuit();
+        return CardIds.suit(card1.id) == CardIds.suit(card2.id);
     }
 
     public static List<Card> createNewDeck() {
@@ -129,21 +127,6 @@ public class Card extends ImageView {
     }
 
     public static void loadCardImages() {
-        cardBackImage = new Image("card_images/card_back_green.png");
-        String suitName = "";
-        int suitIndex;
-
-        for (suits suit : suits.values()) {
-            suitName = suit.toString().toLowerCase();
-            suitIndex = (suits.valueOf(suit.toString()).ordinal() + 1);
-
-            for (ranks rank : ranks.values()) {
-                int currentRank = (ranks.valueOf(rank.toString()).ordinal() + 1);
-                String cardName = suitName + currentRank;
-                String cardId = "S" + suitIndex + "R" + currentRank;
-                String imageFileName = "card_images/" + cardName + ".png";
-                cardFaceImages.put(cardId, new Image(imageFileName));
-            }
-        }
+        atlas = CardAtlas.load();
     }
 }
@@ -0,0 +1,171 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.jfr.AnimationFinishEvent;
+import javafx.animation.AnimationTimer;
+import javafx.animation.Interpolator;
+import javafx.scene.effect.DropShadow;
+
+import java.util.Arrays;
+
+/**
+ * Moves cards with one {@link AnimationTimer} instead of a set of transitions per card.
+ * The tweens in flight are kept in parallel arrays, packed at the front in the order they
+ * were started, so starting, updating and finishing one allocates nothing; every pulse
+ * updates the translation and drop shadow of all of them in a single pass. Cards sent
+ * to a pile together land on it in the order they were sent.
+ *
+ * A tween ends with the card resting at its target: its shadow is back to normal and, if
+ * it was given a destination pile, the card is moved onto it. The shadow is only touched
+ * for cards that were lifted, so sliding a resting card keeps its cached shadow.
+ */
+public class CardAnimator {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final double REST_SHADOW_RADIUS = TableEffects.REST_SHADOW_RADIUS;
+
+    private Card[] cards = new Card[INITIAL_CAPACITY];
+    private Pile[] destPiles = new Pile[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY * Value.COUNT];
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    private long[] durations = new long[INITIAL_CAPACITY];
+    private int active;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(now);
+        }
+    };
+
+    /**
+     * Offsets of one tween's values in {@code values}
+     */
+    private static final class Value {
+        static final int START_X = 0;
+        static final int START_Y = 1;
+        static final int END_X = 2;
+        static final int END_Y = 3;
+        static final int START_RADIUS = 4;
+        static final int START_OFFSET_X = 5;
+        static final int START_OFFSET_Y = 6;
+        static final int COUNT = 7;
+    }
+
+    /**
+     * Slides the card from where it is shown now to the given position of its top left
+     * corner. A card that is already moving is retargeted from its current position.
+     *
+     * @param destPile pile to put the card on when it arrives, or null to leave it where it is
+     */
+    public void animate(Card card, double targetX, double targetY, long durationNanos, Pile destPile) {
+        int slot = card.getAnimationSlot();
+        if (slot < 0) {
+            slot = active++;
+            ensureCapacity(active);
+            cards[slot] = card;
+            card.setAnimationSlot(slot);
+        }
+        int base = slot * Value.COUNT;
+        DropShadow shadow = card.getDropShadow();
+        values[base + Value.START_X] = card.getTranslateX();
+        values[base + Value.START_Y] = card.getTranslateY();
+        values[base + Value.END_X] = targetX - card.getLayoutX();
+        values[base + Value.END_Y] = targetY - card.getLayoutY();
+        values[base + Value.START_RADIUS] = shadow.getRadius();
+        values[base + Value.START_OFFSET_X] = shadow.getOffsetX();
+        values[base + Value.START_OFFSET_Y] = shadow.getOffsetY();
+        destPiles[slot] = destPile;
+        startTimes[slot] = System.nanoTime();
+        durations[slot] = Math.max(1, durationNanos);
+        timer.start();
+    }
+
+    /**
+     * Stops the card where it is, without moving it to its destination pile.
+     */
+    public void cancel(Card card) {
+        int slot = card.getAnimationSlot();
+        if (slot >= 0) {
+            remove(slot);
+        }
+    }
+
+    public boolean isAnimating(Card card) {
+        return card.getAnimationSlot() >= 0;
+    }
+
+    public int getActiveCount() {
+        return active;
+    }
+
+    private void pulse(long now) {
+        for (int slot = 0; slot < active; slot++) {
+            Card card = cards[slot];
+            int base = slot * Value.COUNT;
+            double progress = Math.min(1, (double) (now - startTimes[slot]) / durations[slot]);
+            double eased = Interpolator.EASE_IN.interpolate(0.0, 1.0, progress);
+            double remaining = 1 - eased;
+
+            card.setTranslateX(values[base + Value.START_X]
+                    + (values[base + Value.END_X] - values[base + Value.START_X]) * eased);
+            card.setTranslateY(values[base + Value.START_Y]
+                    + (values[base + Value.END_Y] - values[base + Value.START_Y]) * eased);
+            if (TableEffects.isLifted(card)) {
+                DropShadow shadow = card.getDropShadow();
+                shadow.setRadius(REST_SHADOW_RADIUS + (values[base + Value.START_RADIUS] - REST_SHADOW_RADIUS) * remaining);
+                shadow.setOffsetX(values[base + Value.START_OFFSET_X] * remaining);
+                shadow.setOffsetY(values[base + Value.START_OFFSET_Y] * remaining);
+            }
+
+            if (progress >= 1) {
+                Pile destPile = destPiles[slot];
+                long elapsed = now - startTimes[slot];
+                remove(slot--);
+                reportFinish(card, destPile, elapsed);
+                TableEffects.rest(card);
+                if (destPile != null) {
+                    card.moveToPile(destPile);
+                }
+            }
+        }
+        if (active == 0) {
+            timer.stop();
+        }
+    }
+
+    private void reportFinish(Card card, Pile destPile, long elapsed) {
+        AnimationFinishEvent event = new AnimationFinishEvent();
+        if (event.shouldCommit()) {
+            event.destinationPileType = (destPile != null ? destPile : card.getContainingPile()).getPileType().name();
+            event.slideDuration = elapsed;
+            event.activeCount = active;
+            event.commit();
+        }
+    }
+
+    private void remove(int slot) {
+        cards[slot].setAnimationSlot(-1);
+        int following = --active - slot;
+        System.arraycopy(cards, slot + 1, cards, slot, following);
+        System.arraycopy(destPiles, slot + 1, destPiles, slot, following);
+        System.arraycopy(startTimes, slot + 1, startTimes, slot, following);
+        System.arraycopy(durations, slot + 1, durations, slot, following);
+        System.arraycopy(values, (slot + 1) * Value.COUNT, values, slot * Value.COUNT, following * Value.COUNT);
+        for (int i = slot; i < active; i++) {
+            cards[i].setAnimationSlot(i);
+        }
+        cards[active] = null;
+        destPiles[active] = null;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= cards.length) {
+            return;
+        }
+        int capacity = cards.length * 2;
+        cards = Arrays.copyOf(cards, capacity);
+        destPiles = Arrays.copyOf(destPiles, capacity);
+        values = Arrays.copyOf(values, capacity * Value.COUNT);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+    }
+}
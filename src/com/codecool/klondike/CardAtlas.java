@@ -0,0 +1,259 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.jfr.CardImagesLoadEvent;
+import com.codecool.klondike.model.CardIds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * All card faces and backs packed into one image. Cards show their part of it through
+ * {@code ImageView.setViewport}, so flipping a card or switching the card back never
+ * decodes anything.
+ *
+ * The first run decodes the card PNGs in parallel and stores the packed pixels in a
+ * local cache file; later runs only read that file. The file holds a checksum of the
+ * names and bytes of the images it was built from, so it is built again when an image
+ * changes or a card back is added.
+ */
+public class CardAtlas {
+    public static final String[] BACK_NAMES = {"green", "blue", "loops", "purple", "red"};
+
+    private static final int CACHE_MAGIC = 0x4B434154;
+    private static final int CACHE_VERSION = 2;
+    private static final long NO_KEY = -1;
+    private static final Path CACHE_FILE = Paths.get(System.getProperty("user.home"), ".klondike", "card-atlas.bin");
+
+    private static final int COLUMNS = CardIds.RANKS;
+    private static final int ROWS = CardIds.SUITS + 1;
+    private static final int ENTRIES = CardIds.DECK_SIZE + BACK_NAMES.length;
+    private static final int ATLAS_WIDTH = COLUMNS * Card.WIDTH;
+    private static final int ATLAS_HEIGHT = ROWS * Card.HEIGHT;
+
+    private final Image image;
+    private final Rectangle2D[] viewports = new Rectangle2D[ENTRIES];
+
+    private CardAtlas(int[] pixels, int[] widths, int[] heights) {
+        WritableImage writableImage = new WritableImage(ATLAS_WIDTH, ATLAS_HEIGHT);
+        writableImage.getPixelWriter().setPixels(0, 0, ATLAS_WIDTH, ATLAS_HEIGHT,
+                PixelFormat.getIntArgbInstance(), pixels, 0, ATLAS_WIDTH);
+        image = writableImage;
+        for (int i = 0; i < ENTRIES; i++) {
+            viewports[i] = new Rectangle2D(cellX(i), cellY(i), widths[i], heights[i]);
+        }
+    }
+
+    /**
+     * Loads the atlas from the cache, or builds it from the card images and caches it,
+     * and prints how long that took.
+     */
+    public static CardAtlas load() {
+        CardImagesLoadEvent event = new CardImagesLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long key = resourceKey();
+        CardAtlas atlas = key == NO_KEY ? null : readCache(key);
+        String source = "cache";
+        if (atlas == null) {
+            atlas = build(key);
+            source = "card images";
+        }
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.imageCount = ENTRIES;
+            event.commit();
+        }
+        System.out.printf("Card atlas loaded from %s in %.1f ms%n", source, (System.nanoTime() - start) / 1e6);
+        return atlas;
+    }
+
+    public Image getImage() {
+        return image;
+    }
+
+    public Rectangle2D getFaceViewport(int cardId) {
+        return viewports[cardId];
+    }
+
+    public Rectangle2D getBackViewport(String backName) {
+        for (int i = 0; i < BACK_NAMES.length; i++) {
+            if (BACK_NAMES[i].equals(backName)) {
+                return viewports[CardIds.DECK_SIZE + i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown card back: " + backName);
+    }
+
+    /**
+     * @param key the key of the card images the cache is written for, or {@link #NO_KEY}
+     *            not to write it
+     */
+    private static CardAtlas build(long key) {
+        int[] pixels = new int[ATLAS_WIDTH * ATLAS_HEIGHT];
+        int[] widths = new int[ENTRIES];
+        int[] heights = new int[ENTRIES];
+        int threads = Math.min(ENTRIES, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "card-image-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> decodes = new ArrayList<>();
+            for (int i = 0; i < ENTRIES; i++) {
+                int entry = i;
+                decodes.add(executor.submit(() -> decode(entry, pixels, widths, heights)));
+            }
+            for (Future<?> decode : decodes) {
+                decode.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading card images", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not load card images", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        if (key != NO_KEY) {
+            Thread cacheWriter = new Thread(() -> writeCache(pixels, widths, heights, key), "card-atlas-cache-writer");
+            cacheWriter.start();
+        }
+        return new CardAtlas(pixels, widths, heights);
+    }
+
+    /**
+     * Decodes one card image straight into its cell of the atlas pixels; the cells do not
+     * overlap, so the decoders never touch the same part of the array.
+     */
+    private static void decode(int entry, int[] pixels, int[] widths, int[] heights) {
+        Image cardImage = new Image(fileName(entry));
+        if (cardImage.isError()) {
+            throw new IllegalStateException("Could not load " + fileName(entry), cardImage.getException());
+        }
+        int width = Math.min(Card.WIDTH, (int) cardImage.getWidth());
+        int height = Math.min(Card.HEIGHT, (int) cardImage.getHeight());
+        cardImage.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+                pixels, cellY(entry) * ATLAS_WIDTH + cellX(entry), ATLAS_WIDTH);
+        widths[entry] = width;
+        heights[entry] = height;
+    }
+
+    private static String fileName(int entry) {
+        if (entry >= CardIds.DECK_SIZE) {
+            return "card_images/card_back_" + BACK_NAMES[entry - CardIds.DECK_SIZE] + ".png";
+        }
+        String suitName = Card.suits.values()[CardIds.suit(entry) - 1].toString().toLowerCase();
+        return "card_images/" + suitName + CardIds.rank(entry) + ".png";
+    }
+
+    private static int cellX(int entry) {
+        return (entry % COLUMNS) * Card.WIDTH;
+    }
+
+    private static int cellY(int entry) {
+        return (entry / COLUMNS) * Card.HEIGHT;
+    }
+
+    /**
+     * @return a CRC-32 of the atlas layout and the name and bytes of every card image, or
+     * {@link #NO_KEY} if an image cannot be read
+     */
+    private static long resourceKey() {
+        CRC32 crc = new CRC32();
+        ByteBuffer layout = ByteBuffer.allocate(3 * Integer.BYTES)
+                .putInt(ENTRIES).putInt(Card.WIDTH).putInt(Card.HEIGHT);
+        crc.update(layout.array());
+        byte[] buffer = new byte[1 << 14];
+        for (int i = 0; i < ENTRIES; i++) {
+            crc.update(fileName(i).getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = CardAtlas.class.getClassLoader().getResourceAsStream(fileName(i))) {
+                if (in == null) {
+                    return NO_KEY;
+                }
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                return NO_KEY;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return the cached atlas, or null if there is none for the card images of this key
+     */
+    private static CardAtlas readCache(long key) {
+        if (!Files.isRegularFile(CACHE_FILE)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(CACHE_FILE)), 1 << 16))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION || in.readLong() != key) {
+                return null;
+            }
+            int[] widths = new int[ENTRIES];
+            int[] heights = new int[ENTRIES];
+            for (int i = 0; i < ENTRIES; i++) {
+                widths[i] = in.readShort();
+                heights[i] = in.readShort();
+            }
+            byte[] raw = new byte[ATLAS_WIDTH * ATLAS_HEIGHT * Integer.BYTES];
+            in.readFully(raw);
+            int[] pixels = new int[ATLAS_WIDTH * ATLAS_HEIGHT];
+            ByteBuffer.wrap(raw).asIntBuffer().get(pixels);
+            return new CardAtlas(pixels, widths, heights);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable card atlas cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeCache(int[] pixels, int[] widths, int[] heights, long key) {
+        try {
+            Files.createDirectories(CACHE_FILE.getParent());
+            Path tempFile = Files.createTempFile(CACHE_FILE.getParent(), "card-atlas", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(Files.newOutputStream(tempFile)), 1 << 16))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeLong(key);
+                for (int i = 0; i < ENTRIES; i++) {
+                    out.writeShort(widths[i]);
+                    out.writeShort(heights[i]);
+                }
+                ByteBuffer raw = ByteBuffer.allocate(pixels.length * Integer.BYTES);
+                raw.asIntBuffer().put(pixels);
+                out.write(raw.array());
+            }
+            Files.move(tempFile, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not cache the card atlas: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.model.KlondikeState;
+
+/**
+ * Uniform grid over the table that records which piles' drop areas touch each cell, as a
+ * bitmask of pile indices. Looking up the piles under a dragged card only reads the few
+ * cells the card covers, however many piles there are and wherever they are laid out.
+ */
+public class DropTargetIndex {
+    private static final double CELL_SIZE = 100;
+    private static final int COLUMNS = 20;
+    private static final int ROWS = 16;
+
+    private final int[] cells = new int[COLUMNS * ROWS];
+    private final double[] areas = new double[KlondikeState.PILE_COUNT * 4];
+    private final boolean[] indexed = new boolean[KlondikeState.PILE_COUNT];
+
+    /**
+     * Sets the drop area of a pile, replacing its previous one.
+     */
+    public void update(int pile, double x, double y, double width, double height) {
+        if (indexed[pile]) {
+            mark(pile, false);
+        }
+        int base = pile * 4;
+        areas[base] = x;
+        areas[base + 1] = y;
+        areas[base + 2] = width;
+        areas[base + 3] = height;
+        indexed[pile] = true;
+        mark(pile, true);
+    }
+
+    /**
+     * @return bitmask of the piles whose drop area may intersect the given rectangle
+     */
+    public int candidates(double x, double y, double width, double height) {
+        int result = 0;
+        int lastColumn = column(x + width);
+        int lastRow = row(y + height);
+        for (int row = row(y); row <= lastRow; row++) {
+            for (int column = column(x); column <= lastColumn; column++) {
+                result |= cells[row * COLUMNS + column];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the area shared by the pile's drop area and the given rectangle
+     */
+    public double overlap(int pile, double x, double y, double width, double height) {
+        int base = pile * 4;
+        double overlapWidth = Math.min(x + width, areas[base] + areas[base + 2]) - Math.max(x, areas[base]);
+        double overlapHeight = Math.min(y + height, areas[base + 1] + areas[base + 3]) - Math.max(y, areas[base + 1]);
+        return overlapWidth > 0 && overlapHeight > 0 ? overlapWidth * overlapHeight : 0;
+    }
+
+    public double getX(int pile) {
+        return areas[pile * 4];
+    }
+
+    public double getY(int pile) {
+        return areas[pile * 4 + 1];
+    }
+
+    private void mark(int pile, boolean add) {
+        int base = pile * 4;
+        int bit = 1 << pile;
+        int lastColumn = column(areas[base] + areas[base + 2]);
+        int lastRow = row(areas[base + 1] + areas[base + 3]);
+        for (int row = row(areas[base + 1]); row <= lastRow; row++) {
+            for (int column = column(areas[base]); column <= lastColumn; column++) {
+                if (add) {
+                    cells[row * COLUMNS + column] |= bit;
+                } else {
+                    cells[row * COLUMNS + column] &= ~bit;
+                }
+            }
+        }
+    }
+
+    private static int column(double x) {
+        return Math.max(0, Math.min(COLUMNS - 1, (int) (x / CELL_SIZE)));
+    }
+
+    private static int row(double y) {
+        return Math.max(0, Math.min(ROWS - 1, (int) (y / CELL_SIZE)));
+    }
+}
@@ -1,36 +1,120 @@
 package com.codecool.klondike;
 
+import com.codecool.klondike.jfr.DealEvent;
+import com.codecool.klondike.jfr.MoveEvent;
+import com.codecool.klondike.jfr.StockRefillEvent;
+import com.codecool.klondike.jfr.ThemeSwitchEvent;
+import com.codecool.klondike.jfr.WinEvent;
+import com.codecool.klondike.model.CardIds;
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.MoveLog;
+import com.codecool.klondike.model.Moves;
+import com.codecool.klondike.replay.Replay;
+import com.codecool.klondike.solver.WinEstimate;
+import com.codecool.klondike.solver.WinEstimator;
+import com.codecool.klondike.solver.WinnableDealPool;
+import com.codecool.klondike.stats.GameRecord;
+import com.codecool.klondike.stats.Statistics;
+import com.codecool.klondike.stats.StatisticsStore;
+import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
-import javafx.scene.Scene;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Game extends Pane {
     private Stage currentStage = Klondike.getPrimaryStage();
 
     private List<Card> deck;
     private List<Card> deckListForReference = new ArrayList<>();
-    private List<Card> remainingCardsInTableau = new ArrayList<>();
+    private KlondikeState state;
+    private MoveLog moveLog = new MoveLog();
+    private long seed = SavedGame.NO_SEED;
+    private String theme = DEFAULT_THEME;
+    private AutoSave autoSave = Klondike.getAutoSave();
+    private HintEngine hintEngine = Klondike.getHintEngine();
+    private WinEstimator winEstimator = Klondike.getWinEstimator();
+    private StatisticsStore statistics = Klondike.getStatistics();
+    private long gameStart = System.nanoTime();
+    private boolean replayed;
+    private GameRecord winRecord;
+    private boolean endGameCheckPending;
+    private boolean gameOver;
 
     private Pile stockPile;
     private Pile discardPile;
     private List<Pile> foundationPiles = FXCollections.observableArrayList();
     private List<Pile> tableauPiles = FXCollections.observableArrayList();
+    private Pile[] pilesByIndex = new Pile[KlondikeState.PILE_COUNT];
+    private DropTargetIndex dropTargets = new DropTargetIndex();
+    private Rectangle dropHighlight = new Rectangle(Card.WIDTH, Card.HEIGHT);
+    private Rectangle hintSource = new Rectangle(Card.WIDTH, Card.HEIGHT);
+    private Rectangle hintTarget = new Rectangle(Card.WIDTH, Card.HEIGHT);
+    private PauseTransition hintTimeout = new PauseTransition(HINT_DURATION);
+    private Label winChance = new Label();
+    private AtomicBoolean winChanceRefreshPending = new AtomicBoolean();
 
     private double dragStartX, dragStartY;
-    private List<Card> draggedCards = FXCollections.observableArrayList();
-    private List<Card> cardsToDrag = FXCollections.observableArrayList();
+    private double dragOffsetX, dragOffsetY;
+    private boolean dragStarted;
+    private boolean dragOffsetPending;
+    private List<Card> draggedCards = new ArrayList<>(CardIds.DECK_SIZE);
+    private AnimationTimer dragUpdater = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            applyDragOffset();
+        }
+    };
+
+    private int[] replayMoves;
+    private int replayPosition;
+    private long lastReplayStep;
+    private AnimationTimer replayer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stepReplay(now);
+        }
+    };
+
+    private long lastAutoPlayStep;
+    private AnimationTimer autoPlayer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stepAutoPlay(now);
+        }
+    };
+    private static boolean autoPlaySafeCards;
+    private static boolean showWinChance;
+    private static boolean winnableDealsOnly;
 
     private static double STOCK_GAP = 0;
     private static double FOUNDATION_GAP = 0;
     private static double TABLEAU_GAP = 30;
+    private static final String DEFAULT_THEME = "Green";
+    private static final long REPLAY_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long AUTO_PLAY_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int AUTO_PLAY_BATCH = 2;
+    private static final int AUTO_PLAY_MAX_IN_FLIGHT = 6;
+    private static final Duration HINT_DURATION = Duration.millis(1500);
 
     private Map<String, String> colors = new TreeMap<String, String>() {{
         put("Blue", "#0097e6");
@@ -42,58 +126,159 @@ public class Game extends Pane {
 
 
     Game() {
+        this(nextSeed());
+    }
+
+    /**
+     * @return a seed from the pool of winnable deals if the player asked for those and one
+     * is ready, otherwise a random one
+     */
+    private static long nextSeed() {
+        WinnableDealPool dealPool = Klondike.getDealPool();
+        if (winnableDealsOnly && dealPool != null) {
+            long seed = dealPool.take();
+            if (seed != WinnableDealPool.NO_SEED) {
+                return seed;
+            }
+            System.err.println("No winnable deal is ready yet; dealing one at random");
+        }
+        return DealGenerator.randomSeed();
+    }
+
+    /**
+     * Deals the cards shuffled as {@link DealGenerator} does for the seed, so the seed alone
+     * reproduces the deal.
+     */
+    Game(long seed) {
         createGameMenu();
         deck = Card.createNewDeck();
         deckListForReference.addAll(deck);
-        Collections.shuffle(deck);
+        int[] deckOrder = DealGenerator.deckOrder(seed);
+        for (int i = 0; i < deckOrder.length; i++) {
+            deck.set(i, deckListForReference.get(deckOrder[i]));
+        }
+        state = KlondikeState.deal(deckOrder);
+        this.seed = seed;
+        showSeed();
 
         initPiles();
         dealCards();
+        initDropTargets();
+        initHintHighlights();
+        initWinChance();
+        analysePosition();
+        resetWinEstimate();
+        applyTheme(theme);
+        PerformanceMonitor.attach(this);
     }
 
-    private EventHandler<MouseEvent> onMouseClickedHandler = e -> {
+    /**
+     * Puts a saved game back on the table as it was, without replaying its moves.
+     */
+    Game(SavedGame savedGame) {
+        createGameMenu();
+        deck = Card.createNewDeck();
+        deckListForReference.addAll(deck);
+        state = new KlondikeState(savedGame.getState());
+        seed = savedGame.getSeed();
+        showSeed();
+        for (int move : savedGame.getMoves()) {
+            moveLog.record(move);
+        }
+
+        initPiles();
+        placeCards();
+        initDropTargets();
+        initHintHighlights();
+        initWinChance();
+        analysePosition();
+        resetWinEstimate();
+        applyTheme(colors.containsKey(savedGame.getTheme()) ? savedGame.getTheme() : DEFAULT_THEME);
+        PerformanceMonitor.attach(this);
+    }
+
+    /**
+     * Deals the deal of the seed on this table, as {@link #Game(long)} would. The cards,
+     * piles, effects and handlers of the game before are reused, so a new game allocates
+     * little more than its state.
+     */
+    public void newGame(long seed) {
+        if (!gameOver) {
+            recordGame(false);
+        }
+        stopReplay();
+        autoPlayer.stop();
+        dragUpdater.stop();
+        dragStarted = false;
+        dragOffsetPending = false;
+        draggedCards.clear();
+        showDropHighlight(null);
+        for (Card card : deckListForReference) {
+            MouseUtil.getAnimator().cancel(card);
+            TableEffects.rest(card);
+        }
+        for (Pile pile : pilesByIndex) {
+            pile.clear();
+        }
+
+        state = DealGenerator.deal(seed);
+        this.seed = seed;
+        moveLog.clear();
+        gameStart = System.nanoTime();
+        replayed = false;
+        winRecord = null;
+        gameOver = false;
+        endGameCheckPending = false;
+        showSeed();
+        placeCards();
+        updateDropTargets();
+        analysePosition();
+        resetWinEstimate();
+        saveGame();
+    }
+
+    private EventHandler<MouseEvent> onMouseClickedHandler = PerformanceMonitor.timed(PerformanceMonitor.CLICK, e -> {
+        stopReplay();
         Card card = (Card) e.getSource();
         Pile clickedPile = card.getContainingPile();
 
         if (e.getClickCount() == 1) {
             if (clickedPile.getPileType() == Pile.PileType.STOCK) {
+                applyMove(Moves.DRAW);
                 card.moveToPile(discardPile);
                 card.flip();
                 card.setMouseTransparent(false);
+                checkEndGame();
             }
         }
 
         if (e.getClickCount() == 2) {
             handleDoubleClick(card);
         }
-    };
+    });
 
     private void handleDoubleClick(Card card) {
+        Pile clickedPile = card.getContainingPile();
+        if (clickedPile.getTopCard() != card) {
+            return;
+        }
         for (Pile destPile : foundationPiles) {
-            Card topCard = destPile.getTopCard();
-            if (!destPile.isEmpty()) {
-                if (Card.isSameSuit(card, topCard) && topCard.getRank() + 1 == card.getRank()) {
-                    draggedCards.add(card);
-                    removeCardAndFlipNext(card, destPile);
-                    draggedCards.clear();
-                }
-            } else {
-                if (card.getRank() == 1) {
-                    draggedCards.add(card);
-                    removeCardAndFlipNext(card, destPile);
-                    draggedCards.clear();
-                    break;
-                }
+            if (destPile != clickedPile && isMoveValid(card, destPile)) {
+                draggedCards.add(card);
+                removeCardAndFlipNext(card, destPile);
+                draggedCards.clear();
+                break;
             }
         }
+        checkEndGame();
     }
 
     private void removeCardAndFlipNext(Card card, Pile destPile) {
         Pile clickedPile = card.getContainingPile();
+        applyMove(Moves.of(clickedPile.getIndex(), destPile.getIndex(), 1));
         MouseUtil.slideToDest(draggedCards, destPile);
         card.setContainingPile(destPile);
         clickedPile.removeCard(card);
-        checkEndGame();
 
         if (!clickedPile.isEmpty()
                 && clickedPile.getPileType().equals(Pile.PileType.TABLEAU)
@@ -104,53 +289,57 @@ public class Game extends Pane {
     }
 
     private EventHandler<MouseEvent> stockReverseCardsHandler = e -> {
+        stopReplay();
         refillStockFromDiscard();
     };
 
-    private EventHandler<MouseEvent> onMousePressedHandler = e -> {
+    /**
+     * Resolves the run of cards a drag would move, so the drag events themselves only
+     * record where the mouse is.
+     */
+    private EventHandler<MouseEvent> onMousePressedHandler = PerformanceMonitor.timed(PerformanceMonitor.PRESS, e -> {
+        stopReplay();
         dragStartX = e.getSceneX();
         dragStartY = e.getSceneY();
-    };
+        dragStarted = false;
+        draggedCards.clear();
 
-    private EventHandler<MouseEvent> onMouseDraggedHandler = e -> {
         Card card = (Card) e.getSource();
         Pile activePile = card.getContainingPile();
         if (activePile.getPileType() == Pile.PileType.STOCK)
             return;
-        double offsetX = e.getSceneX() - dragStartX;
-        double offsetY = e.getSceneY() - dragStartY;
-
-        for (int i = activePile.getCards().indexOf(card); i < activePile.numOfCards(); i++) {
-            cardsToDrag.add(activePile.getCards().get(i));
-        }
-
-        draggedCards.clear();
-        draggedCards.addAll(cardsToDrag);
-        cardsToDrag.clear();
-
-        for (Card draggedCard : draggedCards) {
-            draggedCard.getDropShadow().setRadius(20);
-            draggedCard.getDropShadow().setOffsetX(10);
-            draggedCard.getDropShadow().setOffsetY(10);
-
-            draggedCard.toFront();
-            draggedCard.setTranslateX(offsetX);
-            draggedCard.setTranslateY(offsetY);
+        List<Card> cards = activePile.getCards();
+        for (int i = cards.indexOf(card); i < cards.size(); i++) {
+            if (MouseUtil.getAnimator().isAnimating(cards.get(i))) {
+                draggedCards.clear();
+                return;
+            }
+            draggedCards.add(cards.get(i));
         }
-    };
+    });
 
-    private EventHandler<MouseEvent> onMouseReleasedHandler = e -> {
-        if (draggedCards.isEmpty()) {
+    private EventHandler<MouseEvent> onMouseDraggedHandler = PerformanceMonitor.timed(PerformanceMonitor.DRAG, e -> {
+        if (draggedCards.isEmpty())
             return;
+        if (!dragStarted) {
+            liftDraggedCards();
         }
-        Card card = (Card) e.getSource();
-        Pile pile;
+        dragOffsetX = e.getSceneX() - dragStartX;
+        dragOffsetY = e.getSceneY() - dragStartY;
+        dragOffsetPending = true;
+    });
 
-        if (e.getSceneY() < 300.0 && e.getSceneX() > 600) {
-            pile = getValidIntersectingPile(card, foundationPiles);
-        } else {
-            pile = getValidIntersectingPile(card, tableauPiles);
+    private EventHandler<MouseEvent> onMouseReleasedHandler = PerformanceMonitor.timed(PerformanceMonitor.RELEASE, e -> {
+        dragUpdater.stop();
+        if (!dragStarted) {
+            draggedCards.clear();
+            return;
         }
+        dragStarted = false;
+        applyDragOffset();
+        Card card = draggedCards.get(0);
+        Pile pile = findDropTarget(card);
+        showDropHighlight(null);
 
         if (pile != null) {
             handleValidMove(card, pile);
@@ -159,63 +348,173 @@ public class Game extends Pane {
         }
         draggedCards.clear();
         checkEndGame();
-    };
+    });
+
+    /**
+     * Brings the dragged cards above the rest of the table with a raised shadow, once per
+     * drag, and starts moving them with the screen refresh.
+     */
+    private void liftDraggedCards() {
+        dragStarted = true;
+        dropHighlight.toFront();
+        for (Card draggedCard : draggedCards) {
+            TableEffects.lift(draggedCard);
+            draggedCard.toFront();
+        }
+        dragUpdater.start();
+    }
+
+    /**
+     * Moves the dragged cards to the last recorded mouse position; however many drag
+     * events arrived since the previous frame, this runs at most once per frame.
+     */
+    private void applyDragOffset() {
+        if (!dragOffsetPending) {
+            return;
+        }
+        dragOffsetPending = false;
+        for (int i = 0; i < draggedCards.size(); i++) {
+            Card draggedCard = draggedCards.get(i);
+            draggedCard.setTranslateX(dragOffsetX);
+            draggedCard.setTranslateY(dragOffsetY);
+        }
+        showDropHighlight(findDropTarget(draggedCards.get(0)));
+    }
 
+    /**
+     * Runs once per change of the position: the calls made along one move chain after the
+     * first one return immediately, as does every call after the game has been won.
+     *
+     * Once the game is decided, the remaining cards are played to the foundations; otherwise,
+     * if the player asked for it, the cards that are safe to put there are.
+     */
     public void checkEndGame() {
-        if (isGameWon()) {
-            for (Card card : deckListForReference) {
-                boolean isContainerPileTableau = card.getContainingPile().getPileType().equals(Pile.PileType.TABLEAU);
-                if (isContainerPileTableau) {
-                    for (Pile pile : foundationPiles) {
-                        if (Card.isSameSuit(card, pile.getTopCard())) {
-                            Pile finalFoundationPile = foundationPiles.get(foundationPiles.indexOf(pile));
-                            card.setFinalDestPile(finalFoundationPile);
-                        }
-                    }
-                    remainingCardsInTableau.add(card);
-                }
+        if (!endGameCheckPending || gameOver) {
+            return;
+        }
+        endGameCheckPending = false;
+        if (isGameDecided()) {
+            reportWin();
+            winRecord = recordGame(true);
+            gameOver = true;
+            if (autoSave != null) {
+                autoSave.delete();
             }
+            removeMouseEventHandlers();
+            startAutoPlay();
+        } else if (autoPlaySafeCards && replayMoves == null && !moveLog.canRedo()) {
+            startAutoPlay();
+        }
+    }
 
-            for (Card card : remainingCardsInTableau) {
-                MouseUtil.autoSlideCard(card, card.getFinalDestPile());
-            }
+    private void reportWin() {
+        WinEvent event = new WinEvent();
+        if (event.shouldCommit()) {
+            event.movesPlayed = moveLog.position();
+            event.foundationCards = state.foundationCardCount();
+            event.tableauCards = CardIds.DECK_SIZE - state.foundationCardCount();
+            event.commit();
+        }
+    }
 
-            removeMouseEventHandlers();
-            alertWin();
+    /**
+     * Counts the game in the statistics, unless it was not really played: no move was made,
+     * or the moves came from a replay. A game restored at launch counts its time from then.
+     *
+     * @return the record of the game, or null if it was not counted
+     */
+    private GameRecord recordGame(boolean won) {
+        if (statistics == null || replayed || moveLog.position() == 0) {
+            return null;
+        }
+        GameRecord record = new GameRecord(System.currentTimeMillis(), seed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - gameStart),
+                moveLog.position(), state.foundationCardCount(), won);
+        statistics.record(record);
+        return record;
+    }
+
+    private void startAutoPlay() {
+        lastAutoPlayStep = 0;
+        autoPlayer.start();
+    }
+
+    /**
+     * Plays cards to the foundations as a pipeline: every {@link #AUTO_PLAY_STEP_NANOS} a
+     * batch of up to {@link #AUTO_PLAY_BATCH} cards starts sliding, as long as no more than
+     * {@link #AUTO_PLAY_MAX_IN_FLIGHT} are on their way. Each card is the lowest one that can
+     * go up once the game is decided, so the foundations fill in rank order; before that,
+     * only safe cards are played. The first batch waits for the cards of the player's move
+     * to land, as the piles only hold them from then on.
+     */
+    private void stepAutoPlay(long now) {
+        CardAnimator animator = MouseUtil.getAnimator();
+        if (currentStage != null && currentStage.getScene() != getScene()) {
+            autoPlayer.stop();
+            return;
+        }
+        if (now - lastAutoPlayStep < AUTO_PLAY_STEP_NANOS || !draggedCards.isEmpty()
+                || (lastAutoPlayStep == 0 && animator.getActiveCount() > 0)) {
+            return;
+        }
+        int started = 0;
+        while (started < AUTO_PLAY_BATCH && animator.getActiveCount() < AUTO_PLAY_MAX_IN_FLIGHT) {
+            int move = gameOver ? state.findLowestFoundationMove() : state.findSafeFoundationMove();
+            if (move < 0) {
+                break;
+            }
+            playMove(move);
+            started++;
+        }
+        if (started > 0) {
+            lastAutoPlayStep = now;
+        } else if (!gameOver) {
+            autoPlayer.stop();
+        } else if (animator.getActiveCount() == 0) {
+            autoPlayer.stop();
+            Platform.runLater(this::alertWin);
         }
     }
 
     private void alertWin() {
         Alert alert = new Alert(Alert.AlertType.NONE, "Do you want to play again?",
                 ButtonType.YES, ButtonType.NO, ButtonType.CANCEL);
+        if (winRecord != null) {
+            Statistics totals = statistics.getStatistics();
+            alert.setHeaderText(String.format("Won in %s with %d moves.%nYou have won %d of %d games, %d in a row.",
+                    Statistics.formatDuration(winRecord.getDurationMillis()), winRecord.getMoves(),
+                    totals.getWins(), totals.getGames(), totals.getCurrentStreak()));
+        }
         alert.showAndWait();
         if (alert.getResult() == ButtonType.YES) {
-            Scene scene = Klondike.startGame();
-            currentStage.setScene(scene);
+            newGame(nextSeed());
         } else if (alert.getResult() == ButtonType.NO) {
             currentStage.close();
         }
     }
 
     private void removeMouseEventHandlers() {
-        for (Pile pile : foundationPiles) {
-            for (Card card : pile.getCards()) {
-                card.setOnMouseClicked(null);
-                card.setOnMousePressed(null);
-                card.setOnMouseDragged(null);
-                card.setOnMouseReleased(null);
-            }
+        for (Card card : deckListForReference) {
+            card.setOnMouseClicked(null);
+            card.setOnMousePressed(null);
+            card.setOnMouseDragged(null);
+            card.setOnMouseReleased(null);
         }
     }
 
-    public boolean isGameWon() {
-        int cardsInFoundation = 0;
-        for (Card card: deckListForReference) {
-            if (!card.isFaceDown() && !card.getContainingPile().getPileType().equals(Pile.PileType.DISCARD)) {
-                cardsInFoundation++;
-            }
-        }
-        return cardsInFoundation == 52;
+    /**
+     * @return true once the game is decided, before it is actually won: every card is face
+     * up and the stock and discard piles are empty, so the rest only has to be played to
+     * the foundations
+     */
+    public boolean isGameDecided() {
+        return state.canAutoFinish();
+    }
+
+    private void removeDragHandlers(Card card) {
+        card.setOnMousePressed(null);
+        card.setOnMouseDragged(null);
+        card.setOnMouseReleased(null);
     }
 
     public void addMouseEventHandlers(Card card) {
@@ -226,60 +525,261 @@ public class Game extends Pane {
     }
 
     public void refillStockFromDiscard() {
-        if (stockPile.isEmpty()) {
-            ObservableList<Card> discarded = discardPile.getCards();
-            Collections.reverse(discarded);
-            for (Card card : discarded) {
+        if (stockPile.isEmpty() && !discardPile.isEmpty()) {
+            StockRefillEvent event = new StockRefillEvent();
+            event.begin();
+            int cardCount = discardPile.numOfCards();
+            applyMove(Moves.refill(cardCount));
+            turnDiscardOver();
+            checkEndGame();
+            if (event.shouldCommit()) {
+                event.cardCount = cardCount;
+                event.commit();
+            }
+        }
+    }
+
+    private void turnDiscardOver() {
+        ObservableList<Card> discarded = discardPile.getCards();
+        Collections.reverse(discarded);
+        for (Card card : discarded) {
+            card.flip();
+            stockPile.addCard(card);
+        }
+        discardPile.clear();
+    }
+
+    /**
+     * Takes back the last move played. Does nothing while cards are still sliding, as
+     * they only join their pile when they arrive.
+     */
+    public void undo() {
+        stopReplay();
+        autoPlayer.stop();
+        if (gameOver || !moveLog.canUndo() || MouseUtil.getAnimator().getActiveCount() > 0) {
+            return;
+        }
+        int move = moveLog.undo();
+        state.undoMove(move);
+        if (showWinChance && winEstimator != null) {
+            winEstimator.undone(state, move);
+        }
+        Pile sourcePile = pilesByIndex[Moves.from(move)];
+        Pile destPile = pilesByIndex[Moves.to(move)];
+
+        if (Moves.isDraw(move)) {
+            Card card = discardPile.getTopCard();
+            discardPile.removeCard(card);
+            card.flip();
+            stockPile.addCard(card);
+        } else if (Moves.isRefill(move)) {
+            ObservableList<Card> stocked = stockPile.getCards();
+            for (int i = stocked.size() - 1; i >= 0; i--) {
+                Card card = stocked.get(i);
                 card.flip();
-                stockPile.addCard(card);
+                discardPile.addCard(card);
+            }
+            stockPile.clear();
+        } else {
+            if (Moves.isFlipped(move)) {
+                Card flippedCard = sourcePile.getTopCard();
+                flippedCard.flip();
+                removeDragHandlers(flippedCard);
             }
-            discardPile.clear();
+            moveTopCards(destPile, sourcePile, Moves.count(move));
         }
+        updatePiles(move);
+        saveGame();
     }
 
-    public boolean isMoveValid(Card card, Pile destPile) {
-        if (destPile.getPileType().equals(Pile.PileType.TABLEAU)) {
-            if (!destPile.isEmpty() && !destPile.getTopCard().isFaceDown()) {
-                int clickedCardRank = card.getRank();
-                int targetPileTopCardRank = destPile.getTopCard().getRank();
-                return clickedCardRank + 1 == targetPileTopCardRank && !Card.isOppositeColor(card, destPile.getTopCard());
-            } else {
-                return card.getRank() == 13;
+    /**
+     * Plays the last undone move again.
+     */
+    public void redo() {
+        stopReplay();
+        if (gameOver || !moveLog.canRedo() || MouseUtil.getAnimator().getActiveCount() > 0) {
+            return;
+        }
+        int move = moveLog.redo();
+        state.applyMove(Moves.withoutFlag(move));
+        if (showWinChance && winEstimator != null) {
+            winEstimator.played(state, move);
+        }
+        Pile sourcePile = pilesByIndex[Moves.from(move)];
+        Pile destPile = pilesByIndex[Moves.to(move)];
+
+        if (Moves.isDraw(move)) {
+            Card card = stockPile.getTopCard();
+            card.moveToPile(discardPile);
+            card.flip();
+        } else if (Moves.isRefill(move)) {
+            turnDiscardOver();
+        } else {
+            moveTopCards(sourcePile, destPile, Moves.count(move));
+            if (Moves.isFlipped(move)) {
+                autoFlipNextCard(sourcePile);
             }
-        } else if (destPile.getPileType().equals(Pile.PileType.FOUNDATION)) {
-            if (destPile.isEmpty() && card.getRank() == 1) {
-                return true;
-            } else if (!destPile.isEmpty()
-                    && card.getRank() == destPile.getTopCard().getRank() + 1
-                    && Card.isSameSuit(card, destPile.getTopCard())) {
-                return true;
-            } else {
-                return false;
+        }
+        updatePiles(move);
+        saveGame();
+        checkEndGame();
+    }
+
+    /**
+     * Plays recorded moves on screen, one every {@link #REPLAY_STEP_NANOS} once the cards
+     * of the previous one have landed, until the moves run out, one of them is not legal
+     * or the player takes over.
+     */
+    public void playReplay(int[] moves) {
+        replayed = true;
+        replayMoves = moves;
+        replayPosition = 0;
+        lastReplayStep = 0;
+        replayer.start();
+    }
+
+    private void stopReplay() {
+        replayer.stop();
+        replayMoves = null;
+    }
+
+    private void stepReplay(long now) {
+        if (MouseUtil.getAnimator().getActiveCount() > 0 || now - lastReplayStep < REPLAY_STEP_NANOS) {
+            return;
+        }
+        if (gameOver || replayPosition == replayMoves.length) {
+            stopReplay();
+            return;
+        }
+        int move = replayMoves[replayPosition];
+        if (!state.isMoveValid(Moves.withoutFlag(move))) {
+            System.err.println("Replay stopped at move " + (replayPosition + 1) + ": "
+                    + Moves.toString(move) + " is not legal here");
+            stopReplay();
+            return;
+        }
+        replayPosition++;
+        lastReplayStep = now;
+        playMove(move);
+    }
+
+    /**
+     * Plays a legal move the way the player would, sliding the cards to their new pile.
+     */
+    private void playMove(int move) {
+        Pile sourcePile = pilesByIndex[Moves.from(move)];
+        Pile destPile = pilesByIndex[Moves.to(move)];
+        applyMove(Moves.withoutFlag(move));
+
+        if (Moves.isDraw(move)) {
+            Card card = stockPile.getTopCard();
+            card.moveToPile(discardPile);
+            card.flip();
+        } else if (Moves.isRefill(move)) {
+            turnDiscardOver();
+        } else {
+            ObservableList<Card> cards = sourcePile.getCards();
+            List<Card> run = new ArrayList<>(cards.subList(cards.size() - Moves.count(move), cards.size()));
+            for (Card card : run) {
+                card.toFront();
+                card.setContainingPile(destPile);
+                sourcePile.removeCard(card);
             }
+            MouseUtil.slideToDest(run, destPile);
+            autoFlipNextCard(sourcePile);
+        }
+        checkEndGame();
+    }
+
+    /**
+     * Moves the top cards of a pile onto another one at once, keeping their order.
+     */
+    private void moveTopCards(Pile sourcePile, Pile destPile, int count) {
+        ObservableList<Card> cards = sourcePile.getCards();
+        int first = cards.size() - count;
+        for (int i = first; i < cards.size(); i++) {
+            destPile.addCard(cards.get(i));
         }
-        return false;
+        cards.remove(first, cards.size());
     }
 
-    private Pile getValidIntersectingPile(Card card, List<Pile> piles) {
+    public boolean isMoveValid(Card card, Pile destPile) {
+        Pile sourcePile = card.getContainingPile();
+        int count = sourcePile.numOfCards() - sourcePile.getCards().indexOf(card);
+        return state.isMoveValid(Moves.of(sourcePile.getIndex(), destPile.getIndex(), count));
+    }
+
+    /**
+     * @return the pile the card would be dropped on: among the piles its current position
+     * overlaps and that accept it, the one it overlaps most; null if there is none
+     */
+    Pile findDropTarget(Card card) {
+        double x = card.getLayoutX() + card.getTranslateX();
+        double y = card.getLayoutY() + card.getTranslateY();
+        int candidates = dropTargets.candidates(x, y, Card.WIDTH, Card.HEIGHT);
         Pile result = null;
-        for (Pile pile : piles) {
-            if (!pile.equals(card.getContainingPile()) &&
-                    isOverPile(card, pile) &&
-                    isMoveValid(card, pile))
+        double largestOverlap = 0;
+        while (candidates != 0) {
+            int index = Integer.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            Pile pile = pilesByIndex[index];
+            if (pile == card.getContainingPile()) {
+                continue;
+            }
+            double overlap = dropTargets.overlap(index, x, y, Card.WIDTH, Card.HEIGHT);
+            if (overlap > largestOverlap && isMoveValid(card, pile)) {
+                largestOverlap = overlap;
                 result = pile;
+            }
         }
         return result;
     }
 
-    private boolean isOverPile(Card card, Pile pile) {
-        if (pile.isEmpty())
-            return card.getBoundsInParent().intersects(pile.getBoundsInParent());
-        else
-            return card.getBoundsInParent().intersects(pile.getTopCard().getBoundsInParent());
+    private void showDropHighlight(Pile pile) {
+        if (pile == null) {
+            dropHighlight.setVisible(false);
+            return;
+        }
+        dropHighlight.relocate(dropTargets.getX(pile.getIndex()), dropTargets.getY(pile.getIndex()));
+        dropHighlight.setVisible(true);
+    }
+
+    /**
+     * Keeps the drop area of a foundation or tableau pile in the index in line with the
+     * number of cards on it: its top card, or the empty pile itself.
+     */
+    private void updateDropTarget(int index) {
+        if (!KlondikeState.isFoundation(index) && !KlondikeState.isTableau(index)) {
+            return;
+        }
+        Pile pile = pilesByIndex[index];
+        double y = pile.getLayoutY() + Math.max(0, state.size(index) - 1) * pile.getCardGap();
+        dropTargets.update(index, pile.getLayoutX(), y, Card.WIDTH, Card.HEIGHT);
+    }
+
+    private void updateDropTargets() {
+        for (int i = 0; i < KlondikeState.PILE_COUNT; i++) {
+            updateDropTarget(i);
+        }
+    }
+
+    private void initDropTargets() {
+        updateDropTargets();
+        dropHighlight.setFill(Color.TRANSPARENT);
+        dropHighlight.setStroke(Color.GOLD);
+        dropHighlight.setStrokeWidth(3);
+        dropHighlight.setArcWidth(10);
+        dropHighlight.setArcHeight(10);
+        dropHighlight.setMouseTransparent(true);
+        dropHighlight.setVisible(false);
+        getChildren().add(dropHighlight);
     }
 
     private void handleValidMove(Card card, Pile destPile) {
+        MoveEvent event = new MoveEvent();
+        event.begin();
         Pile.PileType currentPileType = card.getContainingPile().getPileType();
+        applyMove(Moves.of(card.getContainingPile().getIndex(), destPile.getIndex(), draggedCards.size()));
 
         if (currentPileType.equals(Pile.PileType.DISCARD)) {
             relocateCard(destPile, discardPile);
@@ -293,6 +793,14 @@ public class Game extends Pane {
             Pile sourcePile = foundationPiles.get(origPileNum);
             relocateCard(destPile, sourcePile);
         }
+        if (event.shouldCommit()) {
+            event.sourcePileType = currentPileType.name();
+            event.destinationPileType = destPile.getPileType().name();
+            event.cardCount = draggedCards.size();
+            event.destinationCardCount = state.size(destPile.getIndex());
+            event.cardTurnedUp = Moves.isFlipped(moveLog.get(moveLog.position() - 1));
+            event.commit();
+        }
     }
 
     /**
@@ -312,43 +820,50 @@ public class Game extends Pane {
             sourcePile.removeCard(card);
         }
         MouseUtil.slideToDest(draggedCards, destPile);
-        checkEndGame();
     }
 
 
     private void initPiles() {
-        stockPile = new Pile(Pile.PileType.STOCK, "Stock", STOCK_GAP);
+        stockPile = new Pile(Pile.PileType.STOCK, "Stock", STOCK_GAP, KlondikeState.STOCK);
         stockPile.setBlurredBackground();
         stockPile.setLayoutX(60);
         stockPile.setLayoutY(40);
         stockPile.setOnMouseClicked(stockReverseCardsHandler);
+        pilesByIndex[KlondikeState.STOCK] = stockPile;
         getChildren().add(stockPile);
 
-        discardPile = new Pile(Pile.PileType.DISCARD, "Discard", STOCK_GAP);
+        discardPile = new Pile(Pile.PileType.DISCARD, "Discard", STOCK_GAP, KlondikeState.DISCARD);
         discardPile.setBlurredBackground();
         discardPile.setLayoutX(250);
         discardPile.setLayoutY(40);
+        pilesByIndex[KlondikeState.DISCARD] = discardPile;
         getChildren().add(discardPile);
 
         for (int i = 0; i < 4; i++) {
-            Pile foundationPile = new Pile(Pile.PileType.FOUNDATION, "Foundation " + i, FOUNDATION_GAP);
+            Pile foundationPile = new Pile(Pile.PileType.FOUNDATION, "Foundation " + i, FOUNDATION_GAP,
+                    KlondikeState.FIRST_FOUNDATION + i);
             foundationPile.setBlurredBackground();
             foundationPile.setLayoutX(600 + i * 180);
             foundationPile.setLayoutY(40);
             foundationPiles.add(foundationPile);
+            pilesByIndex[foundationPile.getIndex()] = foundationPile;
             getChildren().add(foundationPile);
         }
         for (int i = 0; i < 7; i++) {
-            Pile tableauPile = new Pile(Pile.PileType.TABLEAU, "Tableau " + i, TABLEAU_GAP);
+            Pile tableauPile = new Pile(Pile.PileType.TABLEAU, "Tableau " + i, TABLEAU_GAP,
+                    KlondikeState.FIRST_TABLEAU + i);
             tableauPile.setBlurredBackground();
             tableauPile.setLayoutX(60 + i * 180);
             tableauPile.setLayoutY(275);
             tableauPiles.add(tableauPile);
+            pilesByIndex[tableauPile.getIndex()] = tableauPile;
             getChildren().add(tableauPile);
         }
     }
 
     public void dealCards() {
+        DealEvent event = new DealEvent();
+        event.begin();
         //add cards to tableau piles
         for (Pile tableau : tableauPiles) {
             int tableauIndex = tableauPiles.indexOf(tableau);
@@ -371,15 +886,286 @@ public class Game extends Pane {
             addMouseEventHandlers(card);
             getChildren().add(card);
         });
+        if (event.shouldCommit()) {
+            event.seed = seed;
+            event.tableauCards = CardIds.DECK_SIZE - stockPile.numOfCards();
+            event.stockCards = stockPile.numOfCards();
+            event.commit();
+        }
+    }
+
+    /**
+     * Lays the cards out as the state has them, turned the right way up and with the
+     * handlers {@link #dealCards()} gives them. Cards already on the table are moved, new
+     * ones added, bottom cards first.
+     */
+    private void placeCards() {
+        for (int p = 0; p < KlondikeState.PILE_COUNT; p++) {
+            Pile pile = pilesByIndex[p];
+            for (int i = 0; i < state.size(p); i++) {
+                Card card = deckListForReference.get(state.card(p, i));
+                if (card.isFaceDown() != state.isFaceDown(p, i)) {
+                    card.flip();
+                }
+                pile.addCard(card);
+                if (KlondikeState.isTableau(p) && card.isFaceDown()) {
+                    removeDragHandlers(card);
+                    card.setOnMouseClicked(onMouseClickedHandler);
+                } else {
+                    addMouseEventHandlers(card);
+                }
+                if (card.getParent() != this) {
+                    getChildren().add(card);
+                }
+            }
+        }
+    }
+
+    private void applyMove(int move) {
+        int applied = state.applyMove(move);
+        moveLog.record(applied);
+        if (showWinChance && winEstimator != null) {
+            winEstimator.played(state, applied);
+        }
+        updatePiles(move);
+        saveGame();
+    }
+
+    private void saveGame() {
+        if (autoSave != null && !gameOver) {
+            autoSave.save(new SavedGame(seed, theme, moveLog.toArray(), state));
+        }
+    }
+
+    private void updatePiles(int move) {
+        updateDropTarget(Moves.from(move));
+        updateDropTarget(Moves.to(move));
+        endGameCheckPending = true;
+        analysePosition();
+    }
+
+    private void analysePosition() {
+        hideHint();
+        if (hintEngine != null && !gameOver) {
+            hintEngine.positionChanged(state);
+        }
+    }
+
+    /**
+     * Outlines the run of cards the hint engine suggests moving and the pile to move it to.
+     * Returns at once: the engine has analysed the position in the background. Does
+     * nothing while cards are sliding, as they join their pile only when they land and
+     * the outline would be taken from the piles as they were before the move.
+     */
+    public void showHint() {
+        if (hintEngine == null || !hintEngine.isReady() || gameOver
+                || MouseUtil.getAnimator().getActiveCount() > 0) {
+            return;
+        }
+        int move = hintEngine.getHint();
+        if (move == HintEngine.NO_HINT) {
+            new Alert(Alert.AlertType.INFORMATION, "There are no moves left.").showAndWait();
+            return;
+        }
+        Pile sourcePile = pilesByIndex[Moves.from(move)];
+        if (Moves.isDraw(move) || Moves.isRefill(move)) {
+            hintSource.setHeight(Card.HEIGHT);
+            hintSource.relocate(stockPile.getLayoutX(), stockPile.getLayoutY());
+            hintTarget.setVisible(false);
+        } else {
+            int count = Moves.count(move);
+            Card firstCard = sourcePile.getCards().get(sourcePile.numOfCards() - count);
+            hintSource.setHeight(Card.HEIGHT + (count - 1) * sourcePile.getCardGap());
+            hintSource.relocate(firstCard.getLayoutX(), firstCard.getLayoutY());
+            hintTarget.relocate(dropTargets.getX(Moves.to(move)), dropTargets.getY(Moves.to(move)));
+            hintTarget.setVisible(true);
+        }
+        hintSource.setVisible(true);
+        hintSource.toFront();
+        hintTarget.toFront();
+        hintTimeout.playFromStart();
+    }
+
+    private void hideHint() {
+        hintTimeout.stop();
+        hintSource.setVisible(false);
+        hintTarget.setVisible(false);
+    }
+
+    private void initHintHighlights() {
+        for (Rectangle highlight : new Rectangle[]{hintSource, hintTarget}) {
+            highlight.setFill(Color.TRANSPARENT);
+            highlight.setStroke(Color.DEEPSKYBLUE);
+            highlight.setStrokeWidth(4);
+            highlight.setArcWidth(10);
+            highlight.setArcHeight(10);
+            highlight.setMouseTransparent(true);
+            highlight.setVisible(false);
+            getChildren().add(highlight);
+        }
+        hintTimeout.setOnFinished(e -> hideHint());
+    }
+
+    private void resetWinEstimate() {
+        if (showWinChance && winEstimator != null) {
+            winEstimator.reset(state);
+        }
+    }
+
+    private void setWinChanceShown(boolean shown) {
+        showWinChance = shown;
+        winChance.setVisible(shown);
+        if (winEstimator == null) {
+            return;
+        }
+        if (shown) {
+            winChance.toFront();
+            winEstimator.reset(state);
+        } else {
+            winEstimator.stop();
+        }
+    }
+
+    /**
+     * Shows the latest estimate of the chance of winning. The estimator calls in after every
+     * sample, from its worker threads, so the calls are folded into at most one pending
+     * refresh on the FX thread.
+     */
+    private void refreshWinChance() {
+        if (!winChanceRefreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        Platform.runLater(() -> {
+            winChanceRefreshPending.set(false);
+            WinEstimate estimate = winEstimator.getEstimate();
+            winChance.setText(estimate.getSamples() == 0 ? "Win chance: sampling..." : "Win chance: " + estimate);
+            winChance.toFront();
+        });
+    }
+
+    private void initWinChance() {
+        winChance.setStyle("-fx-background-color: rgba(0, 0, 0, 0.65); -fx-text-fill: white; -fx-padding: 6;");
+        winChance.setMouseTransparent(true);
+        winChance.setVisible(showWinChance);
+        winChance.layoutXProperty().bind(widthProperty().subtract(winChance.widthProperty()).subtract(10));
+        winChance.layoutYProperty().bind(heightProperty().subtract(winChance.heightProperty()).subtract(10));
+        getChildren().add(winChance);
+        if (winEstimator != null) {
+            winEstimator.setListener(this::refreshWinChance);
+        }
+    }
+
+    public KlondikeState getState() {
+        return state;
+    }
+
+    public MoveLog getMoveLog() {
+        return moveLog;
+    }
+
+    public Pile getPile(int index) {
+        return pilesByIndex[index];
+    }
+
+    private void showSeed() {
+        if (currentStage != null) {
+            currentStage.setTitle(seed == SavedGame.NO_SEED ? Klondike.TITLE : Klondike.TITLE + " - Deal " + seed);
+        }
+    }
+
+    private void chooseDeal() {
+        TextInputDialog dialog = new TextInputDialog(seed == SavedGame.NO_SEED ? "" : String.valueOf(seed));
+        dialog.setHeaderText("Deal number");
+        dialog.showAndWait().ifPresent(text -> {
+            try {
+                newGame(Long.parseLong(text.trim()));
+            } catch (NumberFormatException e) {
+                new Alert(Alert.AlertType.ERROR, "Not a deal number: " + text).showAndWait();
+            }
+        });
+    }
+
+    private void saveReplay() {
+        if (seed == SavedGame.NO_SEED) {
+            new Alert(Alert.AlertType.ERROR, "This game was not dealt from a deal number").showAndWait();
+            return;
+        }
+        File file = replayChooser().showSaveDialog(currentStage);
+        if (file == null) {
+            return;
+        }
+        try {
+            new Replay(seed, moveLog.toArray()).write(file.toPath());
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "Could not save the replay: " + e.getMessage()).showAndWait();
+        }
+    }
+
+    private void openReplay() {
+        File file = replayChooser().showOpenDialog(currentStage);
+        if (file == null) {
+            return;
+        }
+        try {
+            Replay replay = Replay.read(file.toPath());
+            newGame(replay.getSeed());
+            playReplay(replay.getMoves());
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "Could not open the replay: " + e.getMessage()).showAndWait();
+        }
+    }
+
+    private void showStatistics() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION, statistics == null
+                ? "Statistics could not be read, so games are not being counted."
+                : statistics.getStatistics().describe());
+        alert.setHeaderText("Statistics");
+        alert.showAndWait();
+    }
+
+    private static FileChooser replayChooser() {
+        FileChooser chooser = new FileChooser();
+        chooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Klondike replays", "*" + Replay.FILE_EXTENSION));
+        return chooser;
+    }
+
+    private void applyTheme(String themeName) {
+        theme = themeName;
+        setStyle("-fx-background-color: " + colors.get(themeName));
+        switchCardBack(themeName.toLowerCase());
+        saveGame();
     }
 
     private void switchCardBack(String color) {
-        Image newImage = new Image("/card_images/card_back_" + color + ".png");
+        ThemeSwitchEvent event = new ThemeSwitchEvent();
+        event.begin();
+        Rectangle2D newBack = Card.getBackViewport(color);
+        int faceDownCount = 0;
         for (Card card : deckListForReference) {
             if (card.isFaceDown()) {
-                card.setImage(newImage);
+                card.setViewport(newBack);
+                faceDownCount++;
+            }
+            card.setBackFace(newBack);
+        }
+        if (event.shouldCommit()) {
+            event.theme = color;
+            event.cardCount = deckListForReference.size();
+            event.faceDownCount = faceDownCount;
+            event.commit();
+        }
+    }
+
+    private void switchEffectsMode(TableEffects.Mode mode) {
+        TableEffects.setMode(mode);
+        for (Pile pile : pilesByIndex) {
+            pile.setBlurredBackground();
+        }
+        for (Card card : deckListForReference) {
+            if (!MouseUtil.getAnimator().isAnimating(card)) {
+                TableEffects.rest(card);
             }
-            card.setBackFace(newImage);
         }
     }
 
@@ -391,8 +1177,48 @@ public class Game extends Pane {
         menuNewGame.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
-                Scene scene = Klondike.startGame();
-                currentStage.setScene(scene);
+                newGame(nextSeed());
+            }
+        });
+
+        CheckMenuItem menuWinnableDeals = new CheckMenuItem("Winnable Deals Only");
+        menuWinnableDeals.setSelected(winnableDealsOnly);
+        menuWinnableDeals.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                winnableDealsOnly = menuWinnableDeals.isSelected();
+            }
+        });
+
+        MenuItem menuChooseDeal = new MenuItem("Choose Deal...");
+        menuChooseDeal.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                chooseDeal();
+            }
+        });
+
+        MenuItem menuSaveReplay = new MenuItem("Save Replay...");
+        menuSaveReplay.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                saveReplay();
+            }
+        });
+
+        MenuItem menuOpenReplay = new MenuItem("Open Replay...");
+        menuOpenReplay.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                openReplay();
+            }
+        });
+
+        MenuItem menuStatistics = new MenuItem("Statistics...");
+        menuStatistics.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                showStatistics();
             }
         });
 
@@ -405,8 +1231,70 @@ public class Game extends Pane {
         });
 
         menuFile.getItems().add(menuNewGame);
+        menuFile.getItems().add(menuWinnableDeals);
+        menuFile.getItems().add(menuChooseDeal);
+        menuFile.getItems().add(menuSaveReplay);
+        menuFile.getItems().add(menuOpenReplay);
+        menuFile.getItems().add(menuStatistics);
         menuFile.getItems().add(menuExit);
 
+        Menu menuEdit = new Menu("Edit");
+        menuEdit.setStyle("-fx-font-weight: bold");
+
+        MenuItem menuUndo = new MenuItem("Undo");
+        menuUndo.setAccelerator(KeyCombination.keyCombination("Shortcut+Z"));
+        menuUndo.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                undo();
+            }
+        });
+
+        MenuItem menuRedo = new MenuItem("Redo");
+        menuRedo.setAccelerator(KeyCombination.keyCombination("Shortcut+Y"));
+        menuRedo.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                redo();
+            }
+        });
+
+        menuEdit.getItems().add(menuUndo);
+        menuEdit.getItems().add(menuRedo);
+
+        MenuItem menuHint = new MenuItem("Hint");
+        menuHint.setAccelerator(KeyCombination.keyCombination("H"));
+        menuHint.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                showHint();
+            }
+        });
+        menuEdit.getItems().add(menuHint);
+
+        CheckMenuItem menuAutoPlay = new CheckMenuItem("Auto-play Safe Cards");
+        menuAutoPlay.setSelected(autoPlaySafeCards);
+        menuAutoPlay.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                autoPlaySafeCards = menuAutoPlay.isSelected();
+                if (autoPlaySafeCards && !gameOver) {
+                    startAutoPlay();
+                }
+            }
+        });
+        menuEdit.getItems().add(menuAutoPlay);
+
+        CheckMenuItem menuWinChance = new CheckMenuItem("Show Win Chance");
+        menuWinChance.setSelected(showWinChance);
+        menuWinChance.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                setWinChanceShown(menuWinChance.isSelected());
+            }
+        });
+        menuEdit.getItems().add(menuWinChance);
+
         Menu menuTheme = new Menu("Choose a theme");
         menuTheme.setStyle("-fx-font-weight: bold");
 
@@ -419,17 +1307,48 @@ public class Game extends Pane {
             item.setOnAction(new EventHandler<ActionEvent>() {
                 @Override
                 public void handle(ActionEvent event) {
-                    setStyle("-fx-background-color: " + color.getValue());
-                    switchCardBack(color.getKey().toLowerCase());
+                    applyTheme(color.getKey());
                 }
             });
 
             menuTheme.getItems().add(item);
         }
 
+        Menu menuEffects = new Menu("Effects");
+        menuEffects.setStyle("-fx-font-weight: bold");
+        ToggleGroup effectsGroup = new ToggleGroup();
+
+        for (TableEffects.Mode mode : TableEffects.Mode.values()) {
+            RadioMenuItem item = new RadioMenuItem(mode == TableEffects.Mode.FULL ? "Full effects" : "Low effects");
+            item.setToggleGroup(effectsGroup);
+            item.setSelected(mode == TableEffects.getMode());
+            item.setOnAction(new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent event) {
+                    switchEffectsMode(mode);
+                }
+            });
+
+            menuEffects.getItems().add(item);
+        }
+
+        CheckMenuItem menuOverlay = new CheckMenuItem("Performance Overlay");
+        menuOverlay.setAccelerator(KeyCombination.keyCombination("F3"));
+        menuOverlay.setSelected(PerformanceMonitor.isOverlayShown());
+        menuOverlay.setOnAction(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                PerformanceMonitor.setOverlayShown(menuOverlay.isSelected());
+            }
+        });
+        menuEffects.getItems().add(new SeparatorMenuItem());
+        menuEffects.getItems().add(menuOverlay);
+
         MenuBar menuBar = new MenuBar();
         menuBar.getMenus().add(menuFile);
+        menuBar.getMenus().add(menuEdit);
         menuBar.getMenus().add(menuTheme);
+        menuBar.getMenus().add(menuEffects);
 
         menuBar.setStyle("-fx-pref-width: 1400");
 
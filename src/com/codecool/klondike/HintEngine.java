@@ -0,0 +1,195 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+import com.codecool.klondike.solver.SolveResult;
+import com.codecool.klondike.solver.Solver;
+import javafx.application.Platform;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Works out the best next move on a background thread while the player thinks, so asking
+ * for a hint returns at once.
+ *
+ * Every position change starts a new analysis and cancels the one still running: a
+ * bounded {@link Solver} search first, whose winning line starts with the hint, and if
+ * that finds no win, the legal moves ranked by a two-move lookahead. The answer is
+ * published on the FX thread, and only if the position has not changed since.
+ *
+ * {@link #positionChanged}, {@link #getHint} and {@link #isReady} must be called on the FX
+ * thread; the metrics can be read from any thread.
+ */
+public class HintEngine {
+    public static final int NO_HINT = -1;
+
+    private static final int TABLE_BITS = 18;
+    private static final long MAX_NODES = 200_000;
+    private static final int FOUNDATION_WEIGHT = 20;
+    private static final int FACE_DOWN_WEIGHT = 10;
+    private static final int TALON_MOVE_PENALTY = 1;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hint-engine");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Solver solver = new Solver(TABLE_BITS, MAX_NODES, false);
+    private final int[] moves = new int[KlondikeState.MAX_MOVES];
+    private final int[] replies = new int[KlondikeState.MAX_MOVES];
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong analysed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong totalComputeNanos = new AtomicLong();
+    private volatile long lastComputeNanos;
+
+    private int hint = NO_HINT;
+    private boolean ready;
+
+    /**
+     * Drops the hint of the previous position and starts analysing this one.
+     */
+    public void positionChanged(KlondikeState state) {
+        long current = generation.incrementAndGet();
+        hint = NO_HINT;
+        ready = false;
+        solver.cancel();
+        KlondikeState position = new KlondikeState(state);
+        queueDepth.incrementAndGet();
+        worker.execute(() -> {
+            queueDepth.decrementAndGet();
+            if (generation.get() != current) {
+                cancelled.incrementAndGet();
+                return;
+            }
+            analyse(position, current);
+        });
+    }
+
+    /**
+     * @return the best move found for the current position, or {@link #NO_HINT} if the
+     * analysis is still running or there is no legal move
+     */
+    public int getHint() {
+        return hint;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getPositionsAnalysed() {
+        return analysed.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    public long getLastComputeNanos() {
+        return lastComputeNanos;
+    }
+
+    public long getAverageComputeNanos() {
+        long count = analysed.get();
+        return count == 0 ? 0 : totalComputeNanos.get() / count;
+    }
+
+    /**
+     * Cancels the analysis still running and stops the worker thread for good.
+     */
+    public void shutdown() {
+        generation.incrementAndGet();
+        solver.cancel();
+        worker.shutdownNow();
+    }
+
+    private void analyse(KlondikeState position, long current) {
+        long start = System.nanoTime();
+        int best = findBestMove(position);
+        if (generation.get() != current) {
+            cancelled.incrementAndGet();
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        lastComputeNanos = elapsed;
+        totalComputeNanos.addAndGet(elapsed);
+        analysed.incrementAndGet();
+        Platform.runLater(() -> {
+            if (generation.get() == current) {
+                hint = best;
+                ready = true;
+            }
+        });
+    }
+
+    private int findBestMove(KlondikeState position) {
+        int count = position.generateMoves(moves);
+        if (count == 0) {
+            return NO_HINT;
+        }
+        SolveResult result = solver.solve(position);
+        if (result.isWon() && result.getSolution().length > 0) {
+            return Moves.withoutFlag(result.getSolution()[0]);
+        }
+
+        int best = NO_HINT;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int applied = position.applyMove(moves[i]);
+            int score = Math.max(evaluate(position), bestReply(position));
+            if (isTalonMove(moves[i])) {
+                score -= TALON_MOVE_PENALTY;
+            }
+            position.undoMove(applied);
+            if (score > bestScore) {
+                bestScore = score;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the best score reachable with one more move that is not a stock draw or refill
+     */
+    private int bestReply(KlondikeState position) {
+        int best = Integer.MIN_VALUE;
+        int count = position.generateMoves(replies);
+        for (int i = 0; i < count; i++) {
+            if (isTalonMove(replies[i])) {
+                continue;
+            }
+            int applied = position.applyMove(replies[i]);
+            best = Math.max(best, evaluate(position));
+            position.undoMove(applied);
+        }
+        return best;
+    }
+
+    /**
+     * Scores cards on the foundations up and face-down tableau cards down; the stock does
+     * not count, as drawing from it turns nothing up for good.
+     */
+    private static int evaluate(KlondikeState position) {
+        int faceDown = 0;
+        for (int t = KlondikeState.FIRST_TABLEAU; t < KlondikeState.PILE_COUNT; t++) {
+            faceDown += position.faceDownCount(t);
+        }
+        return FOUNDATION_WEIGHT * position.foundationCardCount() - FACE_DOWN_WEIGHT * faceDown;
+    }
+
+    private static boolean isTalonMove(int move) {
+        return Moves.isDraw(move) || Moves.isRefill(move);
+    }
+}
@@ -1,16 +1,30 @@
 package com.codecool.klondike;
 
+import com.codecool.klondike.solver.WinEstimator;
+import com.codecool.klondike.solver.WinnableDealPool;
+import com.codecool.klondike.stats.StatisticsStore;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 public class Klondike extends Application {
+    static final String TITLE = "Klondike Solitaire";
     private static Stage primaryStage;
     private static final double WINDOW_WIDTH = 1400;
     private static final double WINDOW_HEIGHT = 900;
-
+    private static long launchTime;
+    private static AutoSave autoSave;
+    private static HintEngine hintEngine;
+    private static WinEstimator winEstimator;
+    private static WinnableDealPool dealPool;
+    private static StatisticsStore statistics;
 
     public static void main(String[] args) {
+        launchTime = System.nanoTime();
         launch(args);
     }
 
@@ -18,19 +32,80 @@ public class Klondike extends Application {
     public void start(Stage primaryStage) {
         Card.loadCardImages();
         setPrimaryStage(primaryStage);
-        Scene scene = startGame();
+        autoSave = new AutoSave(AutoSave.DEFAULT_FILE);
+        hintEngine = new HintEngine();
+        winEstimator = new WinEstimator(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        dealPool = new WinnableDealPool(WinnableDealPool.DEFAULT_FILE, WinnableDealPool.DEFAULT_CAPACITY,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        try {
+            statistics = StatisticsStore.open(StatisticsStore.DEFAULT_FILE);
+        } catch (IOException e) {
+            System.err.println("Games will not be counted: " + e.getMessage());
+        }
+        SavedGame savedGame = autoSave.restore();
+        Scene scene = savedGame == null ? startGame() : createScene(new Game(savedGame));
 
-        primaryStage.setTitle("Klondike Solitaire");
         primaryStage.setScene(scene);
         primaryStage.show();
+        reportFirstFrame();
+    }
+
+    /**
+     * Prints the time from launch to the first frame rendered with the game on screen.
+     */
+    private static void reportFirstFrame() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                System.out.printf("First interactive frame %.1f ms after launch%n", (now - launchTime) / 1e6);
+            }
+        }.start();
+    }
+
+    @Override
+    public void stop() {
+        autoSave.close(2, TimeUnit.SECONDS);
+        hintEngine.shutdown();
+        winEstimator.shutdown();
+        dealPool.close(2, TimeUnit.SECONDS);
+        if (statistics != null) {
+            statistics.close(2, TimeUnit.SECONDS);
+        }
+        PerformanceMonitor.writeHistograms();
     }
 
     public static Scene startGame() {
-        Game game = new Game();
-        game.setStyle("-fx-background-color: green");
+        return createScene(new Game());
+    }
+
+    static Scene createScene(Game game) {
         return new Scene(game, WINDOW_WIDTH, WINDOW_HEIGHT);
     }
 
+    public static AutoSave getAutoSave() {
+        return autoSave;
+    }
+
+    public static HintEngine getHintEngine() {
+        return hintEngine;
+    }
+
+    public static WinnableDealPool getDealPool() {
+        return dealPool;
+    }
+
+    public static WinEstimator getWinEstimator() {
+        return winEstimator;
+    }
+
+    /**
+     * @return the statistics, or null if they could not be read
+     */
+    public static StatisticsStore getStatistics() {
+        return statistics;
+    }
+
     public static Stage getPrimaryStage() {
         return primaryStage;
     }
@@ -0,0 +1,216 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.perf.Histogram;
+import com.codecool.klondike.perf.SampleWindow;
+import com.codecool.klondike.solver.WinnableDealPool;
+import javafx.animation.AnimationTimer;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures where the time of the FX thread goes: the interval between pulses, the time
+ * spent in the mouse handlers, the delay from an input event to the next pulse and the
+ * number of cards sliding. The overlay shows percentiles of the last
+ * {@value #WINDOW_SIZE} samples of each; the full distributions are kept in
+ * {@link Histogram}s and written as {@code .hgrm} files at exit into the directory named by
+ * the {@value #HISTOGRAM_PROPERTY} system property.
+ *
+ * Nothing is measured while the overlay is hidden and no directory was given; the timed
+ * handlers then only check a flag. Everything here runs on the FX thread.
+ */
+public class PerformanceMonitor {
+    public static final String HISTOGRAM_PROPERTY = "klondike.perf.histograms";
+
+    private static final int WINDOW_SIZE = 600;
+    private static final long REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final double[] PERCENTILES = {50, 90, 99, 100};
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * One measured quantity, with its recent samples and its full distribution.
+     */
+    public static final class Metric {
+        private final String name;
+        private final double unitScale;
+        private final SampleWindow window = new SampleWindow(WINDOW_SIZE);
+        private final Histogram histogram = new Histogram();
+
+        private Metric(String name, double unitScale) {
+            this.name = name;
+            this.unitScale = unitScale;
+        }
+
+        void record(long value) {
+            window.record(value);
+            histogram.record(value);
+        }
+    }
+
+    public static final Metric FRAME = new Metric("frame", NANOS_PER_MILLI);
+    public static final Metric INPUT_TO_FRAME = new Metric("input-to-frame", NANOS_PER_MILLI);
+    public static final Metric PRESS = new Metric("press", NANOS_PER_MILLI);
+    public static final Metric DRAG = new Metric("drag", NANOS_PER_MILLI);
+    public static final Metric RELEASE = new Metric("release", NANOS_PER_MILLI);
+    public static final Metric CLICK = new Metric("click", NANOS_PER_MILLI);
+    public static final Metric ANIMATIONS = new Metric("animations", 1);
+    private static final Metric[] METRICS = {FRAME, INPUT_TO_FRAME, PRESS, DRAG, RELEASE, CLICK, ANIMATIONS};
+
+    private static final Path histogramDirectory = System.getProperty(HISTOGRAM_PROPERTY) == null
+            ? null : Paths.get(System.getProperty(HISTOGRAM_PROPERTY));
+    private static boolean overlayShown;
+    private static boolean recording;
+    private static Label overlay;
+    private static long lastPulse;
+    private static long pendingInput;
+    private static long lastRefresh;
+    private static final long[] values = new long[PERCENTILES.length];
+
+    private static final AnimationTimer pulseTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(now);
+        }
+    };
+
+    private PerformanceMonitor() {
+    }
+
+    /**
+     * Wraps an event handler so the time it takes, and the delay until the frame showing
+     * its effect, are measured.
+     */
+    public static <T extends Event> EventHandler<T> timed(Metric metric, EventHandler<T> handler) {
+        return event -> {
+            if (!recording) {
+                handler.handle(event);
+                return;
+            }
+            long start = System.nanoTime();
+            if (pendingInput == 0) {
+                pendingInput = start;
+            }
+            handler.handle(event);
+            metric.record(System.nanoTime() - start);
+        };
+    }
+
+    /**
+     * Puts the overlay on the table of a new game; it keeps its state across games.
+     */
+    public static void attach(Pane table) {
+        if (overlay == null) {
+            overlay = new Label();
+            overlay.setStyle("-fx-background-color: rgba(0, 0, 0, 0.65); -fx-text-fill: white;"
+                    + " -fx-font-family: monospace; -fx-padding: 6;");
+            overlay.setMouseTransparent(true);
+            overlay.setVisible(overlayShown);
+            updateRecording();
+        }
+        overlay.setLayoutX(10);
+        overlay.layoutYProperty().bind(table.heightProperty().subtract(overlay.heightProperty()).subtract(10));
+        table.getChildren().add(overlay);
+    }
+
+    public static boolean isOverlayShown() {
+        return overlayShown;
+    }
+
+    public static void setOverlayShown(boolean shown) {
+        overlayShown = shown;
+        if (overlay != null) {
+            overlay.setVisible(shown);
+            overlay.toFront();
+        }
+        updateRecording();
+    }
+
+    /**
+     * Writes the distribution of every metric into the directory given by
+     * {@value #HISTOGRAM_PROPERTY}, one {@code <metric>.hgrm} file each, in milliseconds
+     * or plain counts. Does nothing if the property is not set.
+     */
+    public static void writeHistograms() {
+        if (histogramDirectory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(histogramDirectory);
+            for (Metric metric : METRICS) {
+                Path file = histogramDirectory.resolve(metric.name + ".hgrm");
+                try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                    metric.histogram.outputPercentileDistribution(out, metric.unitScale);
+                }
+            }
+            System.out.println("Performance histograms written to " + histogramDirectory.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Could not write the performance histograms: " + e.getMessage());
+        }
+    }
+
+    private static void updateRecording() {
+        boolean record = overlayShown || histogramDirectory != null;
+        if (record == recording) {
+            return;
+        }
+        recording = record;
+        lastPulse = 0;
+        pendingInput = 0;
+        if (record) {
+            pulseTimer.start();
+        } else {
+            pulseTimer.stop();
+        }
+    }
+
+    private static void pulse(long now) {
+        if (lastPulse != 0) {
+            FRAME.record(now - lastPulse);
+        }
+        lastPulse = now;
+        if (pendingInput != 0) {
+            INPUT_TO_FRAME.record(Math.max(0, now - pendingInput));
+            pendingInput = 0;
+        }
+        ANIMATIONS.record(MouseUtil.getAnimator().getActiveCount());
+        if (overlayShown && overlay != null && now - lastRefresh >= REFRESH_NANOS) {
+            lastRefresh = now;
+            overlay.setText(overlayText());
+            overlay.toFront();
+        }
+    }
+
+    private static String overlayText() {
+        StringBuilder text = new StringBuilder(String.format("%-15s%8s%8s%8s%8s", "", "p50", "p90", "p99", "max"));
+        for (Metric metric : METRICS) {
+            metric.window.percentiles(PERCENTILES, values);
+            text.append(String.format("%n%-15s", metric.name));
+            for (long value : values) {
+                text.append(metric.unitScale == 1
+                        ? String.format("%8d", value)
+                        : String.format("%8.2f", value / metric.unitScale));
+            }
+        }
+        text.append(String.format("%n(ms; animations in cards)"));
+        HintEngine hintEngine = Klondike.getHintEngine();
+        if (hintEngine != null) {
+            text.append(String.format("%nHints %d queued, last %.1f ms, average %.1f ms",
+                    hintEngine.getQueueDepth(), hintEngine.getLastComputeNanos() / 1e6,
+                    hintEngine.getAverageComputeNanos() / 1e6));
+        }
+        WinnableDealPool dealPool = Klondike.getDealPool();
+        if (dealPool != null) {
+            text.append(String.format("%nDeal pool %d/%d, %d hits, %d misses",
+                    dealPool.size(), dealPool.getCapacity(), dealPool.getHits(), dealPool.getMisses()));
+        }
+        return text.toString();
+    }
+}
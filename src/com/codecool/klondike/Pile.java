@@ -2,23 +2,21 @@ package com.codecool.klondike;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.scene.effect.GaussianBlur;
-import javafx.scene.layout.Background;
-import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
 
 public class Pile extends Pane {
 
     private PileType pileType;
     private String name;
     private double cardGap;
+    private int index;
     private ObservableList<Card> cards = FXCollections.observableArrayList();
 
-    public Pile(PileType pileType, String name, double cardGap) {
+    public Pile(PileType pileType, String name, double cardGap, int index) {
         this.pileType = pileType;
         this.cardGap = cardGap;
         this.name = name;
+        this.index = index;
     }
 
     public PileType getPileType() {
@@ -29,6 +27,13 @@ public class Pile extends Pane {
         return name;
     }
 
+    /**
+     * Index of the pile in the game's {@link com.codecool.klondike.model.KlondikeState}
+     */
+    public int getIndex() {
+        return index;
+    }
+
     public double getCardGap() {
         return cardGap;
     }
@@ -76,12 +81,7 @@ public class Pile extends Pane {
     }
 
     public void setBlurredBackground() {
-        setPrefSize(Card.WIDTH, Card.HEIGHT);
-        BackgroundFill backgroundFill = new BackgroundFill(Color.gray(0.0, 0.2), null, null);
-        Background background = new Background(backgroundFill);
-        GaussianBlur gaussianBlur = new GaussianBlur(10);
-        setBackground(background);
-        setEffect(gaussianBlur);
+        TableEffects.placeholder(this);
     }
 
     public enum PileType {
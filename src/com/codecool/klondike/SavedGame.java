@@ -0,0 +1,192 @@
+package com.codecool.klondike;
+
+import com.codecool.klondike.model.CardIds;
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Everything needed to put a game back on the table: the position, the seed it was dealt
+ * from, the moves played so far (so undo keeps working) and the theme.
+ *
+ * Binary layout, big-endian: magic and format version (two ints), seed (long), theme name
+ * (byte length and UTF-8 bytes), number of moves (int) followed by the moves as packed by
+ * {@link com.codecool.klondike.model.Moves}, then for each of the 13 piles its size, its
+ * face-down count (one byte each) and its card ids, bottom card first.
+ *
+ * The moves are only kept if they lead to the position: played from the deal of the seed,
+ * or, without a seed, taken back from the position, each must be legal and turn up a card
+ * exactly when it says it did. Otherwise the game is restored without its history, so
+ * undo cannot take the table apart.
+ */
+public class SavedGame {
+    public static final long NO_SEED = -1;
+
+    private static final int MAGIC = 0x4B4C5356;
+    private static final int VERSION = 1;
+
+    private final long seed;
+    private final String theme;
+    private final int[] moves;
+    private final KlondikeState state;
+
+    public SavedGame(long seed, String theme, int[] moves, KlondikeState state) {
+        this.seed = seed;
+        this.theme = theme;
+        this.moves = moves;
+        this.state = state;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getTheme() {
+        return theme;
+    }
+
+    public int[] getMoves() {
+        return moves;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    public KlondikeState getState() {
+        return state;
+    }
+
+    public ByteBuffer encode() {
+        byte[] themeBytes = theme.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 8 + 1 + themeBytes.length + 4 + moves.length * 4
+                + KlondikeState.PILE_COUNT * 2 + CardIds.DECK_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(seed);
+        buffer.put((byte) themeBytes.length).put(themeBytes);
+        buffer.putInt(moves.length);
+        for (int move : moves) {
+            buffer.putInt(move);
+        }
+        for (int p = 0; p < KlondikeState.PILE_COUNT; p++) {
+            buffer.put((byte) state.size(p)).put((byte) state.faceDownCount(p));
+            for (int i = 0; i < state.size(p); i++) {
+                buffer.put((byte) state.card(p, i));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @throws IOException if the buffer does not hold a saved game this version can read
+     */
+    public static SavedGame decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a saved game, or saved by another version");
+            }
+            long seed = buffer.getLong();
+            byte[] themeBytes = new byte[buffer.get()];
+            buffer.get(themeBytes);
+            int moveCount = buffer.getInt();
+            if (moveCount < 0 || moveCount > buffer.remaining() / 4) {
+                throw new IOException("Truncated saved game");
+            }
+            int[] moves = new int[moveCount];
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = buffer.getInt();
+            }
+            int[][] piles = new int[KlondikeState.PILE_COUNT][];
+            int[] faceDownCounts = new int[KlondikeState.PILE_COUNT];
+            for (int p = 0; p < KlondikeState.PILE_COUNT; p++) {
+                piles[p] = new int[buffer.get()];
+                faceDownCounts[p] = buffer.get();
+                for (int i = 0; i < piles[p].length; i++) {
+                    piles[p][i] = buffer.get();
+                }
+            }
+            KlondikeState state = KlondikeState.of(piles, faceDownCounts);
+            String error = seed == NO_SEED ? checkUndoingMoves(moves, state) : checkPlayingMoves(seed, moves, state);
+            if (error != null) {
+                System.err.println("Dropping the move history of the saved game: " + error);
+                moves = new int[0];
+            }
+            return new SavedGame(seed, new String(themeBytes, StandardCharsets.UTF_8), moves, state);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Truncated saved game", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Saved game holds an impossible position: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return why the moves do not lead from the deal of the seed to the position, or null
+     * if they do
+     */
+    private static String checkPlayingMoves(long seed, int[] moves, KlondikeState position) {
+        KlondikeState state = DealGenerator.deal(seed);
+        for (int i = 0; i < moves.length; i++) {
+            int move = Moves.withoutFlag(moves[i]);
+            if (!isWellFormed(moves[i]) || !state.isMoveValid(move) || state.applyMove(move) != moves[i]) {
+                return "move " + (i + 1) + " cannot be played from deal " + seed;
+            }
+        }
+        return state.equals(position) ? null : "the moves do not lead from deal " + seed + " to the position";
+    }
+
+    /**
+     * @return why the moves cannot be taken back one by one from the position, or null if
+     * they can
+     */
+    private static String checkUndoingMoves(int[] moves, KlondikeState position) {
+        KlondikeState state = new KlondikeState(position);
+        KlondikeState after = new KlondikeState();
+        for (int i = moves.length - 1; i >= 0; i--) {
+            String error = "move " + (i + 1) + " cannot be taken back";
+            if (!isWellFormed(moves[i])) {
+                return error;
+            }
+            after.copyFrom(state);
+            try {
+                state.undoMove(moves[i]);
+            } catch (RuntimeException e) {
+                return error;
+            }
+            int move = Moves.withoutFlag(moves[i]);
+            if (!isPossible(state) || !state.isMoveValid(move) || state.applyMove(move) != moves[i]
+                    || !state.equals(after)) {
+                return error;
+            }
+            state.undoMove(moves[i]);
+        }
+        return null;
+    }
+
+    private static boolean isWellFormed(int move) {
+        return move == (Moves.of(Moves.from(move), Moves.to(move), Moves.count(move)) | move & Moves.FLIPPED);
+    }
+
+    /**
+     * @return true if no pile has fewer than no cards, the stock is face down, and only
+     * tableaus have other face-down cards, under a face-up one
+     */
+    private static boolean isPossible(KlondikeState state) {
+        for (int p = 0; p < KlondikeState.PILE_COUNT; p++) {
+            int size = state.size(p);
+            int faceDown = state.faceDownCount(p);
+            if (size < 0 || faceDown < 0) {
+                return false;
+            }
+            if (p == KlondikeState.STOCK ? faceDown != size
+                    : KlondikeState.isTableau(p) ? faceDown > 0 && faceDown >= size : faceDown != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+package com.codecool.klondike;
+
+import javafx.geometry.Bounds;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.effect.BlurType;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.effect.GaussianBlur;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+/**
+ * Decides which effects are drawn live and which come from cached bitmaps.
+ *
+ * The blurred pile placeholder is rendered once and shared by every pile as an image. A
+ * card at rest keeps its small drop shadow in a cached bitmap of the node, so moving or
+ * redrawing something next to it does not recompute the shadow; only cards that are
+ * lifted by a drag, or sliding back from one, have a live shadow.
+ *
+ * The low-effects mode, for weaker machines, drops the shadows of resting cards and the
+ * placeholder blur altogether and lifts cards with a cheaper one-pass shadow. Its initial
+ * value comes from the {@value #MODE_PROPERTY} system property ({@code full} or {@code low}).
+ */
+public class TableEffects {
+    public enum Mode {FULL, LOW}
+
+    public static final String MODE_PROPERTY = "klondike.effects";
+    public static final double REST_SHADOW_RADIUS = 2;
+    public static final double LIFTED_SHADOW_RADIUS = 20;
+    public static final double LIFTED_SHADOW_OFFSET = 10;
+
+    private static final double PLACEHOLDER_BLUR_RADIUS = 10;
+    private static final Color PLACEHOLDER_COLOR = Color.gray(0.0, 0.2);
+
+    private static Mode mode = "low".equalsIgnoreCase(System.getProperty(MODE_PROPERTY)) ? Mode.LOW : Mode.FULL;
+    private static Image placeholderImage;
+    private static double placeholderOffsetX;
+    private static double placeholderOffsetY;
+
+    private TableEffects() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Changes the mode for cards and piles set up from now on; the game reapplies it to
+     * the ones already on the table.
+     */
+    public static void setMode(Mode mode) {
+        TableEffects.mode = mode;
+    }
+
+    /**
+     * Shows the card lying on a pile: a resting shadow drawn from the node cache, or no
+     * shadow in low-effects mode.
+     */
+    public static void rest(Card card) {
+        DropShadow shadow = card.getDropShadow();
+        shadow.setRadius(REST_SHADOW_RADIUS);
+        shadow.setOffsetX(0);
+        shadow.setOffsetY(0);
+        if (mode == Mode.FULL) {
+            shadow.setBlurType(BlurType.THREE_PASS_BOX);
+            card.setEffect(shadow);
+            card.setCache(true);
+        } else {
+            card.setCache(false);
+            card.setEffect(null);
+        }
+    }
+
+    /**
+     * Shows the card picked up by a drag, with a live raised shadow.
+     */
+    public static void lift(Card card) {
+        DropShadow shadow = card.getDropShadow();
+        card.setCache(false);
+        shadow.setBlurType(mode == Mode.FULL ? BlurType.THREE_PASS_BOX : BlurType.ONE_PASS_BOX);
+        shadow.setRadius(LIFTED_SHADOW_RADIUS);
+        shadow.setOffsetX(LIFTED_SHADOW_OFFSET);
+        shadow.setOffsetY(LIFTED_SHADOW_OFFSET);
+        card.setEffect(shadow);
+    }
+
+    /**
+     * @return true while the card's shadow differs from the resting one and so has to be
+     * drawn live
+     */
+    public static boolean isLifted(Card card) {
+        DropShadow shadow = card.getDropShadow();
+        return shadow.getRadius() != REST_SHADOW_RADIUS || shadow.getOffsetX() != 0 || shadow.getOffsetY() != 0;
+    }
+
+    /**
+     * Marks the place of an empty pile: the shared pre-rendered blurred placeholder, or a
+     * flat translucent fill in low-effects mode.
+     */
+    public static void placeholder(Pile pile) {
+        pile.setPrefSize(Card.WIDTH, Card.HEIGHT);
+        pile.setEffect(null);
+        if (mode == Mode.FULL) {
+            ImageView view = new ImageView(getPlaceholderImage());
+            view.relocate(placeholderOffsetX, placeholderOffsetY);
+            pile.setBackground(null);
+            pile.getChildren().setAll(view);
+        } else {
+            pile.getChildren().clear();
+            pile.setBackground(new Background(new BackgroundFill(PLACEHOLDER_COLOR, null, null)));
+        }
+    }
+
+    private static Image getPlaceholderImage() {
+        if (placeholderImage == null) {
+            Region region = new Region();
+            region.setBackground(new Background(new BackgroundFill(PLACEHOLDER_COLOR, null, null)));
+            region.resize(Card.WIDTH, Card.HEIGHT);
+            region.setEffect(new GaussianBlur(PLACEHOLDER_BLUR_RADIUS));
+            SnapshotParameters parameters = new SnapshotParameters();
+            parameters.setFill(Color.TRANSPARENT);
+            placeholderImage = region.snapshot(parameters, null);
+            Bounds bounds = region.getBoundsInParent();
+            placeholderOffsetX = bounds.getMinX();
+            placeholderOffsetY = bounds.getMinY();
+        }
+        return placeholderImage;
+    }
+}
@@ -0,0 +1,141 @@
+package com.codecool.klondike.bot;
+
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays the first move in this order: a card to a foundation that is safe there or turns
+ * up the card below it, a run that turns up a face-down card (from the pile with most of
+ * them), the discard onto a tableau, part of a run that uncovers a card for a foundation,
+ * any other card to a foundation, a draw, a refill. Cards are never taken back off a
+ * foundation.
+ *
+ * Other tableau moves only turn something up later, and playing them freely would send
+ * the runs back and forth, so they are played only when stuck: once a whole round of the
+ * stock has put no card on a foundation or the tableau and turned none up, one of them is
+ * played, chosen at random but never the one that takes back the last, and the stock goes
+ * round again. The game ends when the {@link Tournament} sees no more progress.
+ */
+public class GreedyStrategy implements Strategy {
+    private static final int SHUFFLE_WHEN_STUCK = 2000;
+    private static final int FOUNDATION = 1000;
+    private static final int REVEAL = 500;
+    private static final int FROM_DISCARD = 100;
+    private static final int UNCOVER_FOR_FOUNDATION = 60;
+    private static final int UNSAFE_FOUNDATION = 50;
+    private static final int DRAW = 10;
+    private static final int REFILL = 5;
+    private static final int NEVER = -1;
+
+    private SplittableRandom random = new SplittableRandom();
+    private int foundationCards;
+    private int faceDownCards;
+    private int talonSize;
+    private int movesSinceProgress;
+    private int lastShuffle;
+
+    @Override
+    public String getName() {
+        return "greedy";
+    }
+
+    @Override
+    public void startGame(long seed) {
+        random = new SplittableRandom(seed);
+        foundationCards = 0;
+        faceDownCards = Integer.MAX_VALUE;
+        talonSize = Integer.MAX_VALUE;
+        movesSinceProgress = 0;
+        lastShuffle = NEVER;
+    }
+
+    @Override
+    public int chooseMove(KlondikeState position, int[] legalMoves, int count) {
+        boolean stuck = isStuck(position);
+        int best = RESIGN;
+        int bestScore = NEVER;
+        int ties = 0;
+        for (int i = 0; i < count; i++) {
+            int score = score(position, legalMoves[i], stuck);
+            if (score > bestScore) {
+                bestScore = score;
+                best = legalMoves[i];
+                ties = 1;
+            } else if (score == bestScore && score == SHUFFLE_WHEN_STUCK && random.nextInt(++ties) == 0) {
+                best = legalMoves[i];
+            }
+        }
+        if (bestScore == SHUFFLE_WHEN_STUCK) {
+            lastShuffle = best;
+            movesSinceProgress = 0;
+        }
+        return best;
+    }
+
+    /**
+     * Counts the moves since a card last went to a foundation or the tableau or was turned
+     * up, and tells whether they are more than one round of the stock.
+     */
+    private boolean isStuck(KlondikeState position) {
+        int foundation = position.foundationCardCount();
+        int faceDown = 0;
+        for (int t = KlondikeState.FIRST_TABLEAU; t < KlondikeState.PILE_COUNT; t++) {
+            faceDown += position.faceDownCount(t);
+        }
+        int talon = position.talonSize();
+        if (foundation > foundationCards || faceDown < faceDownCards || talon < talonSize) {
+            movesSinceProgress = 0;
+        } else {
+            movesSinceProgress++;
+        }
+        foundationCards = foundation;
+        faceDownCards = faceDown;
+        talonSize = talon;
+        return movesSinceProgress > talon + 1;
+    }
+
+    private int score(KlondikeState position, int move, boolean stuck) {
+        if (Moves.isDraw(move)) {
+            return DRAW;
+        }
+        if (Moves.isRefill(move)) {
+            return REFILL;
+        }
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        if (KlondikeState.isFoundation(from)) {
+            return NEVER;
+        }
+        if (KlondikeState.isFoundation(to)) {
+            boolean turnsUp = KlondikeState.isTableau(from) && position.faceDownCount(from) > 0
+                    && position.faceDownCount(from) == position.size(from) - 1;
+            return position.isSafeOnFoundation(position.topCard(from)) || turnsUp
+                    ? FOUNDATION + position.faceDownCount(from) : UNSAFE_FOUNDATION;
+        }
+        if (from == KlondikeState.DISCARD) {
+            return FROM_DISCARD;
+        }
+        int faceDown = position.faceDownCount(from);
+        int left = position.size(from) - Moves.count(move);
+        if (left == faceDown && faceDown > 0) {
+            return REVEAL + faceDown;
+        }
+        if (left > 0 && canGoToFoundation(position, position.card(from, left - 1))) {
+            return UNCOVER_FOR_FOUNDATION;
+        }
+        boolean pointless = left == 0 && position.size(to) == 0;
+        boolean takesBack = lastShuffle != NEVER && from == Moves.to(lastShuffle) && to == Moves.from(lastShuffle);
+        return stuck && !pointless && !takesBack ? SHUFFLE_WHEN_STUCK : NEVER;
+    }
+
+    private static boolean canGoToFoundation(KlondikeState position, int card) {
+        for (int f = KlondikeState.FIRST_FOUNDATION; f < KlondikeState.FIRST_TABLEAU; f++) {
+            if (position.canPlayOnFoundation(card, f)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
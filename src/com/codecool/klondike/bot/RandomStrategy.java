@@ -0,0 +1,27 @@
+package com.codecool.klondike.bot;
+
+import com.codecool.klondike.model.KlondikeState;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays any legal move, all equally likely: the baseline the other strategies should beat.
+ */
+public class RandomStrategy implements Strategy {
+    private SplittableRandom random = new SplittableRandom();
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public void startGame(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public int chooseMove(KlondikeState position, int[] legalMoves, int count) {
+        return legalMoves[random.nextInt(count)];
+    }
+}
@@ -0,0 +1,32 @@
+package com.codecool.klondike.bot;
+
+import com.codecool.klondike.model.KlondikeState;
+
+/**
+ * An automated player: picks the next move of a position. A {@link Tournament} gives each
+ * worker thread instances of its own, so implementations need not be thread-safe, and
+ * may keep state across the moves of one game.
+ */
+public interface Strategy {
+    /** Returned by {@link #chooseMove} to give the game up */
+    int RESIGN = -1;
+
+    String getName();
+
+    /**
+     * Called before the first move of every game.
+     *
+     * @param seed the seed of the deal, for strategies that make random choices and want
+     *             them to repeat with the deal
+     */
+    default void startGame(long seed) {
+    }
+
+    /**
+     * @param position   the position; must be left as it is
+     * @param legalMoves the legal moves of the position, in {@code legalMoves[0..count)}
+     * @param count      the number of legal moves, at least 1
+     * @return one of the legal moves, or {@link #RESIGN}
+     */
+    int chooseMove(KlondikeState position, int[] legalMoves, int count);
+}
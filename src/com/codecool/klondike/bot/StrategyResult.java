@@ -0,0 +1,101 @@
+package com.codecool.klondike.bot;
+
+import com.codecool.klondike.perf.ConfidenceInterval;
+
+/**
+ * What one strategy did in a {@link Tournament}: the games it won and the moves it played,
+ * with 95% confidence intervals, and how fast it played them.
+ */
+public class StrategyResult {
+    private final String name;
+    private long games;
+    private long wins;
+    private long moves;
+    private double movesSquared;
+    private long winMoves;
+    private long nanos;
+
+    StrategyResult(String name) {
+        this.name = name;
+    }
+
+    void record(boolean won, int played, long elapsedNanos) {
+        games++;
+        moves += played;
+        movesSquared += (double) played * played;
+        if (won) {
+            wins++;
+            winMoves += played;
+        }
+        nanos += elapsedNanos;
+    }
+
+    void add(StrategyResult other) {
+        games += other.games;
+        wins += other.wins;
+        moves += other.moves;
+        movesSquared += other.movesSquared;
+        winMoves += other.winMoves;
+        nanos += other.nanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    public double getWinRateLow() {
+        return ConfidenceInterval.wilsonLow(wins, games);
+    }
+
+    public double getWinRateHigh() {
+        return ConfidenceInterval.wilsonHigh(wins, games);
+    }
+
+    /**
+     * @return the moves played per game, won or not
+     */
+    public double getAverageMoves() {
+        return games == 0 ? 0 : (double) moves / games;
+    }
+
+    public double getAverageMovesHalfWidth() {
+        return ConfidenceInterval.meanHalfWidth(games, moves, movesSquared);
+    }
+
+    public double getAverageWinMoves() {
+        return wins == 0 ? 0 : (double) winMoves / wins;
+    }
+
+    /**
+     * @return the time spent playing, summed over the threads
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return games played per second of one thread's time
+     */
+    public double getGamesPerSecond() {
+        return nanos == 0 ? 0 : games * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-10s %6.2f%% won (%.2f-%.2f%%), %.1f +- %.1f moves a game, %.1f to win, %.0f games/s per thread",
+                name, getWinRate() * 100, getWinRateLow() * 100, getWinRateHigh() * 100,
+                getAverageMoves(), getAverageMovesHalfWidth(), getAverageWinMoves(), getGamesPerSecond());
+    }
+}
@@ -0,0 +1,237 @@
+package com.codecool.klondike.bot;
+
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Plays strategies against each other on the same deals, headless and on every core.
+ * Worker threads take seeds from a shared counter in batches; each thread has its own
+ * instance of every strategy and plays each deal once per strategy, by the rules of
+ * {@link KlondikeState}, the ones the game checks moves with: the stock goes round as
+ * often as the player likes.
+ *
+ * A game is won once it can be finished automatically, as the game does. It is lost when
+ * the strategy resigns or has no legal move, after {@value #STALL_MOVES} moves in a row
+ * that neither turn a card up nor put one on a foundation, or after the move limit.
+ * Nothing is kept per game, so a run can play millions of them.
+ */
+public class Tournament {
+    public static final int DEFAULT_MAX_MOVES = 1000;
+    public static final int STALL_MOVES = 200;
+
+    private static final int SEED_BATCH = 256;
+    private static final long REPORT_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final List<Supplier<Strategy>> strategies;
+    private final int threads;
+    private final int maxMoves;
+
+    private long nextSeed;
+    private long endSeed;
+    private long dealsPlayed;
+    private volatile RuntimeException failure;
+
+    /**
+     * @param strategies makers of the strategies to compare, called once per thread
+     * @param threads    number of worker threads
+     * @param maxMoves   moves after which a game counts as lost
+     */
+    public Tournament(List<Supplier<Strategy>> strategies, int threads, int maxMoves) {
+        this.strategies = strategies;
+        this.threads = threads;
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * Plays the deals of {@code deals} consecutive seeds with every strategy.
+     *
+     * @return the results in the order of the strategies
+     * @throws IllegalStateException if a strategy could not be created or played a move
+     *                               that is not legal
+     */
+    public List<StrategyResult> run(long firstSeed, long deals) throws InterruptedException {
+        synchronized (this) {
+            nextSeed = firstSeed;
+            endSeed = firstSeed + deals;
+            dealsPlayed = 0;
+        }
+        failure = null;
+        Thread[] workers = new Thread[threads];
+        List<StrategyResult[]> perThread = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            StrategyResult[] results = new StrategyResult[strategies.size()];
+            perThread.add(results);
+            workers[i] = new Thread(() -> playDeals(results, firstSeed + deals), "tournament-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(1000);
+                long now = System.nanoTime();
+                if (now - lastReport > REPORT_INTERVAL_NANOS) {
+                    lastReport = now;
+                    report(getDealsPlayed(), deals, now - start);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException(failure.getMessage(), failure);
+        }
+        report(getDealsPlayed(), deals, System.nanoTime() - start);
+
+        List<StrategyResult> totals = new ArrayList<>();
+        for (int s = 0; s < strategies.size(); s++) {
+            StrategyResult total = new StrategyResult(perThread.get(0)[s].getName());
+            for (StrategyResult[] results : perThread) {
+                total.add(results[s]);
+            }
+            totals.add(total);
+        }
+        return totals;
+    }
+
+    public synchronized long getDealsPlayed() {
+        return dealsPlayed;
+    }
+
+    private synchronized long takeSeeds() {
+        long first = nextSeed;
+        nextSeed = Math.min(endSeed, nextSeed + SEED_BATCH);
+        return first;
+    }
+
+    private synchronized void finishSeeds(long count) {
+        dealsPlayed += count;
+    }
+
+    private synchronized void abort(RuntimeException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        nextSeed = endSeed;
+    }
+
+    private void playDeals(StrategyResult[] results, long lastSeed) {
+        try {
+            Strategy[] players = new Strategy[strategies.size()];
+            for (int s = 0; s < players.length; s++) {
+                players[s] = strategies.get(s).get();
+                results[s] = new StrategyResult(players[s].getName());
+            }
+            int[] moves = new int[KlondikeState.MAX_MOVES];
+            KlondikeState state = new KlondikeState();
+            long first;
+            while ((first = takeSeeds()) < lastSeed) {
+                long end = Math.min(first + SEED_BATCH, lastSeed);
+                for (long seed = first; seed < end; seed++) {
+                    KlondikeState deal = DealGenerator.deal(seed);
+                    for (int s = 0; s < players.length; s++) {
+                        state.copyFrom(deal);
+                        long start = System.nanoTime();
+                        int played = play(players[s], state, seed, moves);
+                        results[s].record(state.canAutoFinish(), played, System.nanoTime() - start);
+                    }
+                }
+                finishSeeds(end - first);
+            }
+        } catch (RuntimeException e) {
+            abort(e);
+        }
+    }
+
+    /**
+     * Plays one game to its end.
+     *
+     * @return the number of moves played; the game is won if the state can then be
+     * finished automatically
+     */
+    private int play(Strategy strategy, KlondikeState state, long seed, int[] moves) {
+        strategy.startGame(seed);
+        int played = 0;
+        int sinceProgress = 0;
+        while (!state.canAutoFinish() && played < maxMoves && sinceProgress < STALL_MOVES) {
+            int count = state.generateMoves(moves);
+            if (count == 0) {
+                break;
+            }
+            int move = strategy.chooseMove(state, moves, count);
+            if (move == Strategy.RESIGN) {
+                break;
+            }
+            if (!state.isMoveValid(move)) {
+                throw new IllegalStateException(strategy.getName() + " played " + Moves.toString(move)
+                        + " in deal " + seed + ", which is not legal in\n" + state);
+            }
+            int foundationCards = state.foundationCardCount();
+            int applied = state.applyMove(move);
+            played++;
+            boolean progress = Moves.isFlipped(applied) || state.foundationCardCount() > foundationCards;
+            sinceProgress = progress ? 0 : sinceProgress + 1;
+        }
+        return played;
+    }
+
+    private static void report(long played, long total, long elapsedNanos) {
+        System.out.printf("%d/%d deals, %.0f deals/s%n", played, total, played * 1e9 / elapsedNanos);
+    }
+
+    /**
+     * @param name {@code random}, {@code greedy} or the name of a class implementing
+     *             {@link Strategy} with a public constructor without arguments
+     */
+    public static Supplier<Strategy> strategy(String name) {
+        switch (name) {
+            case "random":
+                return RandomStrategy::new;
+            case "greedy":
+                return GreedyStrategy::new;
+            default:
+                Class<? extends Strategy> type;
+                try {
+                    type = Class.forName(name).asSubclass(Strategy.class);
+                    type.getConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("Not a strategy: " + name, e);
+                }
+                return () -> {
+                    try {
+                        return type.getConstructor().newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException("Cannot create " + name, e);
+                    }
+                };
+        }
+    }
+
+    /**
+     * Usage: {@code Tournament [deals] [firstSeed] [threads] [strategy,...]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long deals = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        long firstSeed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String[] names = (args.length > 3 ? args[3] : "random,greedy").split(",");
+
+        List<Supplier<Strategy>> strategies = new ArrayList<>();
+        for (String name : names) {
+            strategies.add(strategy(name.trim()));
+        }
+        long start = System.nanoTime();
+        List<StrategyResult> results = new Tournament(strategies, threads, DEFAULT_MAX_MOVES).run(firstSeed, deals);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d deals from seed %d, %d threads, %.1f s, %.0f games/s%n",
+                deals, firstSeed, threads, seconds, deals * results.size() / seconds);
+        for (StrategyResult result : results) {
+            System.out.println(result);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("klondike.AnimationFinish")
+@Label("Animation Finish")
+@Description("A card arriving at the end of its slide")
+@Category({"Klondike", "Animation"})
+@StackTrace(false)
+public class AnimationFinishEvent extends Event {
+    @Label("Destination Pile Type")
+    public String destinationPileType;
+
+    @Label("Slide Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long slideDuration;
+
+    @Label("Cards In Flight")
+    @Description("Cards still sliding after this one")
+    public int activeCount;
+}
@@ -0,0 +1,24 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("klondike.AnimationStart")
+@Label("Animation Start")
+@Description("Cards starting to slide, to a pile or back to where they were picked up")
+@Category({"Klondike", "Animation"})
+@StackTrace(false)
+public class AnimationStartEvent extends Event {
+    @Label("Destination Pile Type")
+    public String destinationPileType;
+
+    @Label("Cards")
+    public int cardCount;
+
+    @Label("Cards In Flight")
+    public int activeCount;
+}
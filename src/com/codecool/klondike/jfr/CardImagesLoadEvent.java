@@ -0,0 +1,21 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("klondike.CardImagesLoad")
+@Label("Card Images Load")
+@Description("Loading the card atlas, from its cache or by decoding the card images")
+@Category({"Klondike", "Assets"})
+@StackTrace(false)
+public class CardImagesLoadEvent extends Event {
+    @Label("Source")
+    public String source;
+
+    @Label("Images")
+    public int imageCount;
+}
@@ -0,0 +1,24 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("klondike.Deal")
+@Label("Deal")
+@Description("Dealing a new game onto the table")
+@Category({"Klondike", "Game"})
+@StackTrace(false)
+public class DealEvent extends Event {
+    @Label("Seed")
+    public long seed;
+
+    @Label("Tableau Cards")
+    public int tableauCards;
+
+    @Label("Stock Cards")
+    public int stockCards;
+}
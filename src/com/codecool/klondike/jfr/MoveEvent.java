@@ -0,0 +1,31 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("klondike.Move")
+@Label("Move")
+@Description("Playing a validated drag and drop, up to the cards starting to slide")
+@Category({"Klondike", "Game"})
+@StackTrace(false)
+public class MoveEvent extends Event {
+    @Label("Source Pile Type")
+    public String sourcePileType;
+
+    @Label("Destination Pile Type")
+    public String destinationPileType;
+
+    @Label("Cards Moved")
+    public int cardCount;
+
+    @Label("Destination Cards")
+    @Description("Cards on the destination pile after the move")
+    public int destinationCardCount;
+
+    @Label("Card Turned Up")
+    public boolean cardTurnedUp;
+}
@@ -0,0 +1,18 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("klondike.StockRefill")
+@Label("Stock Refill")
+@Description("Turning the discard pile over into the stock")
+@Category({"Klondike", "Game"})
+@StackTrace(false)
+public class StockRefillEvent extends Event {
+    @Label("Cards")
+    public int cardCount;
+}
@@ -0,0 +1,25 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("klondike.ThemeSwitch")
+@Label("Theme Switch")
+@Description("Changing the card backs to another theme")
+@Category({"Klondike", "Assets"})
+@StackTrace(false)
+public class ThemeSwitchEvent extends Event {
+    @Label("Theme")
+    public String theme;
+
+    @Label("Cards")
+    public int cardCount;
+
+    @Label("Face-down Cards")
+    @Description("Cards whose image changed at once")
+    public int faceDownCount;
+}
@@ -0,0 +1,25 @@
+package com.codecool.klondike.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("klondike.Win")
+@Label("Win")
+@Description("Detecting that the game is decided and starting to finish it")
+@Category({"Klondike", "Game"})
+@StackTrace(false)
+public class WinEvent extends Event {
+    @Label("Moves Played")
+    public int movesPlayed;
+
+    @Label("Foundation Cards")
+    public int foundationCards;
+
+    @Label("Tableau Cards")
+    @Description("Cards still to be played to the foundations")
+    public int tableauCards;
+}
@@ -0,0 +1,46 @@
+package com.codecool.klondike.model;
+
+/**
+ * Cards are identified by a primitive id in 0..51: {@code (suit - 1) * 13 + (rank - 1)},
+ * using the same 1-based suit and rank numbers as {@code Card}, so the ids follow
+ * the order of {@code Card.createNewDeck()}.
+ */
+public final class CardIds {
+    public static final int SUITS = 4;
+    public static final int RANKS = 13;
+    public static final int DECK_SIZE = SUITS * RANKS;
+
+    private static final String[] NAMES = new String[DECK_SIZE];
+
+    static {
+        for (int id = 0; id < DECK_SIZE; id++) {
+            NAMES[id] = "S" + suit(id) + "R" + rank(id);
+        }
+    }
+
+    private CardIds() {
+    }
+
+    public static int id(int suit, int rank) {
+        return (suit - 1) * RANKS + (rank - 1);
+    }
+
+    public static int suit(int id) {
+        return id / RANKS + 1;
+    }
+
+    public static int rank(int id) {
+        return id % RANKS + 1;
+    }
+
+    public static boolean isRed(int id) {
+        return id < 2 * RANKS;
+    }
+
+    /**
+     * @return the short name of the card, {@code S<suit>R<rank>}
+     */
+    public static String toString(int id) {
+        return NAMES[id];
+    }
+}
@@ -0,0 +1,47 @@
+package com.codecool.klondike.model;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reproducible deals. A seed is turned into a deck order by the same Fisher-Yates pass
+ * {@code Collections.shuffle(list, new Random(seed))} performs on the deck of
+ * {@code Card.createNewDeck()}: for {@code i} from 52 down to 2, swap the card at
+ * {@code i - 1} with the one at {@code random.nextInt(i)}. {@link Random}'s generator is
+ * fully specified, so a seed gives the same deal on every JVM.
+ */
+public final class DealGenerator {
+    /**
+     * Seeds picked for new games stay below this, so they are easy to read out and type in
+     */
+    public static final long RANDOM_SEED_BOUND = 1_000_000_000L;
+
+    private DealGenerator() {
+    }
+
+    /**
+     * @return card ids in shuffled deck order
+     */
+    public static int[] deckOrder(long seed) {
+        int[] deck = new int[CardIds.DECK_SIZE];
+        for (int i = 0; i < deck.length; i++) {
+            deck[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = deck.length; i > 1; i--) {
+            int j = random.nextInt(i);
+            int swap = deck[i - 1];
+            deck[i - 1] = deck[j];
+            deck[j] = swap;
+        }
+        return deck;
+    }
+
+    public static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong(RANDOM_SEED_BOUND);
+    }
+
+    public static KlondikeState deal(long seed) {
+        return KlondikeState.deal(deckOrder(seed));
+    }
+}
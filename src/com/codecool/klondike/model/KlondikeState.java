@@ -0,0 +1,658 @@
+package com.codecool.klondike.model;
+
+import java.util.Arrays;
+
+/**
+ * Headless Klondike position, independent of JavaFX.
+ *
+ * The 13 piles (stock, discard, 4 foundations, 7 tableaus) are stored as slices of one
+ * byte array holding card ids (see {@link CardIds}), bottom card first. Every pile keeps
+ * its face-down cards at the bottom, so a single face-down count per pile is enough.
+ * {@link #applyMove(int)} and {@link #undoMove(int)} never allocate, and keep an
+ * incremental Zobrist hash of the position up to date, as well as running counters of the
+ * face-down cards and of each suit's foundation, so win checks never scan the piles.
+ */
+public final class KlondikeState {
+    public static final int STOCK = 0;
+    public static final int DISCARD = 1;
+    public static final int FIRST_FOUNDATION = 2;
+    public static final int FIRST_TABLEAU = 6;
+    public static final int FOUNDATION_COUNT = 4;
+    public static final int TABLEAU_COUNT = 7;
+    public static final int PILE_COUNT = 13;
+    public static final int MAX_MOVES = 256;
+    public static final int PACKED_SIZE = PILE_COUNT * 2 + CardIds.DECK_SIZE;
+
+    private static final int STRIDE = CardIds.DECK_SIZE;
+
+    private final byte[] cards = new byte[PILE_COUNT * STRIDE];
+    private final int[] sizes = new int[PILE_COUNT];
+    private final int[] faceDown = new int[PILE_COUNT];
+    private final int[] foundationRanks = new int[CardIds.SUITS + 1];
+    private final int[] foundationPiles = new int[CardIds.SUITS + 1];
+    private int faceDownCards;
+    private int foundationCards;
+    private long hash;
+
+    public KlondikeState() {
+        Arrays.fill(foundationPiles, -1);
+    }
+
+    public KlondikeState(KlondikeState other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Deals the cards the same way {@code Game.dealCards()} does: the tableaus take their
+     * cards from the front of the deck (skipping over it exactly like the list removal there),
+     * only the top tableau cards are face up and the rest of the deck goes to the stock,
+     * the last card ending up on top.
+     *
+     * @param deckOrder card ids in shuffled deck order
+     */
+    public static KlondikeState deal(int[] deckOrder) {
+        if (deckOrder.length != CardIds.DECK_SIZE) {
+            throw new IllegalArgumentException("A deck must have " + CardIds.DECK_SIZE + " cards");
+        }
+        KlondikeState state = new KlondikeState();
+        int[] deck = deckOrder.clone();
+        int remaining = deck.length;
+
+        for (int t = 0; t < TABLEAU_COUNT; t++) {
+            int pile = FIRST_TABLEAU + t;
+            for (int i = 0; i <= t; i++) {
+                state.push(pile, deck[i]);
+                System.arraycopy(deck, i + 1, deck, i, remaining - i - 1);
+                remaining--;
+            }
+            state.faceDown[pile] = t;
+        }
+        for (int i = 0; i < remaining; i++) {
+            state.push(STOCK, deck[i]);
+        }
+        state.faceDown[STOCK] = remaining;
+        state.faceDownCards = CardIds.DECK_SIZE - TABLEAU_COUNT;
+        state.rehash();
+        return state;
+    }
+
+    /**
+     * Builds a position straight from its piles, for example one read back from a saved game.
+     *
+     * @param piles          card ids of each pile, bottom card first
+     * @param faceDownCounts number of face-down cards at the bottom of each pile
+     * @throws IllegalArgumentException if the piles do not hold every card exactly once, or
+     *                                  hold face-down cards or foundations no game can reach
+     */
+    public static KlondikeState of(int[][] piles, int[] faceDownCounts) {
+        if (piles.length != PILE_COUNT || faceDownCounts.length != PILE_COUNT) {
+            throw new IllegalArgumentException("A position must have " + PILE_COUNT + " piles");
+        }
+        KlondikeState state = new KlondikeState();
+        boolean[] seen = new boolean[CardIds.DECK_SIZE];
+        for (int p = 0; p < PILE_COUNT; p++) {
+            int size = piles[p].length;
+            int down = faceDownCounts[p];
+            boolean validFaceDown = p == STOCK ? down == size
+                    : isTableau(p) ? down >= 0 && (down < size || size == 0) : down == 0;
+            if (!validFaceDown) {
+                throw new IllegalArgumentException(pileName(p) + " cannot have " + down + " face-down cards");
+            }
+            for (int i = 0; i < size; i++) {
+                int card = piles[p][i];
+                if (card < 0 || card >= CardIds.DECK_SIZE || seen[card]) {
+                    throw new IllegalArgumentException("Missing or repeated card " + card + " in " + pileName(p));
+                }
+                seen[card] = true;
+                if (isFoundation(p)) {
+                    if (CardIds.rank(card) != i + 1 || CardIds.suit(card) != CardIds.suit(piles[p][0])) {
+                        throw new IllegalArgumentException(pileName(p) + " is not an ace-up run of one suit");
+                    }
+                }
+                state.cards[p * STRIDE + i] = (byte) card;
+            }
+            state.sizes[p] = size;
+            state.faceDown[p] = down;
+            state.faceDownCards += down;
+            if (isFoundation(p) && size > 0) {
+                int suit = CardIds.suit(piles[p][0]);
+                state.foundationRanks[suit] = size;
+                state.foundationPiles[suit] = p;
+                state.foundationCards += size;
+            }
+        }
+        for (int card = 0; card < CardIds.DECK_SIZE; card++) {
+            if (!seen[card]) {
+                throw new IllegalArgumentException("Missing card " + CardIds.toString(card));
+            }
+        }
+        state.rehash();
+        return state;
+    }
+
+    public void copyFrom(KlondikeState other) {
+        System.arraycopy(other.cards, 0, cards, 0, cards.length);
+        System.arraycopy(other.sizes, 0, sizes, 0, PILE_COUNT);
+        System.arraycopy(other.faceDown, 0, faceDown, 0, PILE_COUNT);
+        System.arraycopy(other.foundationRanks, 0, foundationRanks, 0, foundationRanks.length);
+        System.arraycopy(other.foundationPiles, 0, foundationPiles, 0, foundationPiles.length);
+        faceDownCards = other.faceDownCards;
+        foundationCards = other.foundationCards;
+        hash = other.hash;
+    }
+
+    /**
+     * Writes the position in {@value #PACKED_SIZE} bytes, for keeping many positions that
+     * are rarely looked at: the size and face-down count of each pile, then the cards of
+     * each pile in turn, bottom card first.
+     */
+    public void pack(byte[] out) {
+        int n = PILE_COUNT * 2;
+        for (int p = 0; p < PILE_COUNT; p++) {
+            out[2 * p] = (byte) sizes[p];
+            out[2 * p + 1] = (byte) faceDown[p];
+            System.arraycopy(cards, p * STRIDE, out, n, sizes[p]);
+            n += sizes[p];
+        }
+    }
+
+    /**
+     * Sets this to a position written by {@link #pack}. Unlike {@link #of}, nothing is
+     * checked.
+     */
+    public void unpack(byte[] in) {
+        Arrays.fill(foundationRanks, 0);
+        Arrays.fill(foundationPiles, -1);
+        faceDownCards = 0;
+        foundationCards = 0;
+        int n = PILE_COUNT * 2;
+        for (int p = 0; p < PILE_COUNT; p++) {
+            sizes[p] = in[2 * p];
+            faceDown[p] = in[2 * p + 1];
+            faceDownCards += faceDown[p];
+            System.arraycopy(in, n, cards, p * STRIDE, sizes[p]);
+            if (isFoundation(p) && sizes[p] > 0) {
+                int suit = CardIds.suit(in[n]);
+                foundationRanks[suit] = sizes[p];
+                foundationPiles[suit] = p;
+                foundationCards += sizes[p];
+            }
+            n += sizes[p];
+        }
+        rehash();
+    }
+
+    /**
+     * Zobrist hash of the position, maintained incrementally by every move
+     */
+    public long zobristHash() {
+        return hash;
+    }
+
+    /**
+     * Zobrist hash that ignores where the talon is split between stock and discard. The stock
+     * and discard together always read as the same sequence (discard bottom to top, then stock
+     * top to bottom) no matter how often cards are drawn or recycled, so positions that only
+     * differ in the number of draws made share this hash.
+     */
+    public long talonOrderHash() {
+        long h = hash;
+        int discardSize = sizes[DISCARD];
+        int stockSize = sizes[STOCK];
+        for (int i = 0; i < discardSize; i++) {
+            int card = cards[DISCARD * STRIDE + i];
+            h ^= Zobrist.card(card, DISCARD, i) ^ Zobrist.card(card, STOCK, i);
+        }
+        for (int i = 0; i < stockSize; i++) {
+            int card = cards[STOCK * STRIDE + i];
+            h ^= Zobrist.card(card, STOCK, i) ^ Zobrist.card(card, STOCK, discardSize + stockSize - 1 - i);
+        }
+        return h;
+    }
+
+    /**
+     * @return the card at {@code index} of the talon sequence described at
+     * {@link #talonOrderHash()}
+     */
+    public int talonCard(int index) {
+        int discardSize = sizes[DISCARD];
+        if (index < discardSize) {
+            return cards[DISCARD * STRIDE + index];
+        }
+        return cards[STOCK * STRIDE + sizes[STOCK] - 1 - (index - discardSize)];
+    }
+
+    public int talonSize() {
+        return sizes[DISCARD] + sizes[STOCK];
+    }
+
+    private void rehash() {
+        long h = 0;
+        for (int p = 0; p < PILE_COUNT; p++) {
+            for (int i = 0; i < sizes[p]; i++) {
+                h ^= Zobrist.card(cards[p * STRIDE + i], p, i);
+            }
+            if (isTableau(p)) {
+                h ^= Zobrist.faceDown(p, faceDown[p]);
+            }
+        }
+        hash = h;
+    }
+
+    public int size(int pile) {
+        return sizes[pile];
+    }
+
+    public int faceDownCount(int pile) {
+        return faceDown[pile];
+    }
+
+    public boolean isFaceDown(int pile, int index) {
+        return index < faceDown[pile];
+    }
+
+    public int card(int pile, int index) {
+        return cards[pile * STRIDE + index];
+    }
+
+    /**
+     * @return the id of the top card, or -1 if the pile is empty
+     */
+    public int topCard(int pile) {
+        int size = sizes[pile];
+        return size == 0 ? -1 : cards[pile * STRIDE + size - 1];
+    }
+
+    public int foundationCardCount() {
+        return foundationCards;
+    }
+
+    /**
+     * @return the rank of the top card on the foundation of {@code suit}, 0 if it has no ace yet
+     */
+    public int foundationRank(int suit) {
+        return foundationRanks[suit];
+    }
+
+    /**
+     * @return the index of the foundation pile holding {@code suit}, or -1 if its ace is not
+     * on a foundation yet
+     */
+    public int foundationOf(int suit) {
+        return foundationPiles[suit];
+    }
+
+    /**
+     * @return the number of face-down cards in the stock and the tableaus
+     */
+    public int faceDownCardCount() {
+        return faceDownCards;
+    }
+
+    public boolean isWon() {
+        return foundationCards == CardIds.DECK_SIZE;
+    }
+
+    /**
+     * The game is decided once every card is face up and the talon is empty: the remaining
+     * tableau cards can simply be played to the foundations.
+     */
+    public boolean canAutoFinish() {
+        return faceDownCards == 0 && sizes[DISCARD] == 0;
+    }
+
+    public static boolean isFoundation(int pile) {
+        return pile >= FIRST_FOUNDATION && pile < FIRST_TABLEAU;
+    }
+
+    public static boolean isTableau(int pile) {
+        return pile >= FIRST_TABLEAU && pile < PILE_COUNT;
+    }
+
+    public static String pileName(int pile) {
+        if (pile == STOCK) {
+            return "Stock";
+        } else if (pile == DISCARD) {
+            return "Discard";
+        } else if (isFoundation(pile)) {
+            return "Foundation " + (pile - FIRST_FOUNDATION);
+        }
+        return "Tableau " + (pile - FIRST_TABLEAU);
+    }
+
+    /**
+     * Same rules as {@code Game.isMoveValid}, plus the stock/discard cycling of the
+     * stock click and {@code refillStockFromDiscard}.
+     */
+    public boolean isMoveValid(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int count = Moves.count(move);
+
+        if (from == STOCK) {
+            return to == DISCARD && count == 1 && sizes[STOCK] > 0;
+        }
+        if (to == STOCK) {
+            return from == DISCARD && sizes[STOCK] == 0 && sizes[DISCARD] > 0 && count == sizes[DISCARD];
+        }
+        if (from == to || count < 1 || from >= PILE_COUNT || to >= PILE_COUNT
+                || count > sizes[from] - faceDown[from]) {
+            return false;
+        }
+        if (count > 1 && !isTableau(from)) {
+            return false;
+        }
+        int card = cards[from * STRIDE + sizes[from] - count];
+        if (isFoundation(to)) {
+            return count == 1 && canPlayOnFoundation(card, to);
+        } else if (isTableau(to)) {
+            return canPlayOnTableau(card, to);
+        }
+        return false;
+    }
+
+    public boolean canPlayOnFoundation(int card, int foundation) {
+        int size = sizes[foundation];
+        return RuleTables.canPlayOnFoundation(card,
+                size == 0 ? RuleTables.EMPTY : cards[foundation * STRIDE + size - 1]);
+    }
+
+    /**
+     * A tableau holding only face-down cards takes a king, as an empty one does.
+     */
+    public boolean canPlayOnTableau(int card, int tableau) {
+        int size = sizes[tableau];
+        return RuleTables.canPlayOnTableau(card,
+                size == faceDown[tableau] ? RuleTables.EMPTY : cards[tableau * STRIDE + size - 1]);
+    }
+
+    /**
+     * A card can go to its foundation safely when no other card could ever need it as a
+     * parking spot: it is an ace or a two, or both foundations of the opposite colour
+     * already hold the rank below it. Playing it never turns a won game into a lost one.
+     *
+     * @return a move putting such a card from the discard pile or a tableau on its
+     * foundation, or -1 if there is none
+     */
+    public int findSafeFoundationMove() {
+        int move = safeFoundationMoveFrom(DISCARD);
+        for (int t = FIRST_TABLEAU; move < 0 && t < PILE_COUNT; t++) {
+            move = safeFoundationMoveFrom(t);
+        }
+        return move;
+    }
+
+    /**
+     * @return a move putting the lowest ranked card that can go to a foundation there, taken
+     * from the discard pile or a tableau, or -1 if no card can
+     */
+    public int findLowestFoundationMove() {
+        int best = foundationMoveFrom(DISCARD);
+        for (int t = FIRST_TABLEAU; t < PILE_COUNT; t++) {
+            int move = foundationMoveFrom(t);
+            if (move >= 0 && (best < 0 || rankOfTop(t) < rankOfTop(Moves.from(best)))) {
+                best = move;
+            }
+        }
+        return best;
+    }
+
+    private int rankOfTop(int pile) {
+        return CardIds.rank(topCard(pile));
+    }
+
+    private int safeFoundationMoveFrom(int pile) {
+        int card = topCard(pile);
+        if (card < 0 || !isSafeOnFoundation(card)) {
+            return -1;
+        }
+        return foundationMoveFrom(pile);
+    }
+
+    /**
+     * @return true if the card may go to its foundation without risk, in the sense of
+     * {@link #findSafeFoundationMove()}
+     */
+    public boolean isSafeOnFoundation(int card) {
+        int rank = CardIds.rank(card);
+        if (rank <= 2) {
+            return true;
+        }
+        boolean red = CardIds.isRed(card);
+        for (int suit = 1; suit <= CardIds.SUITS; suit++) {
+            if (CardIds.isRed(CardIds.id(suit, 1)) != red && foundationRanks[suit] < rank - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the move putting the face-up top card of the pile on a foundation, or -1 if
+     * it has none or the card cannot go there
+     */
+    private int foundationMoveFrom(int pile) {
+        int card = topCard(pile);
+        if (card < 0 || faceDown[pile] == sizes[pile]) {
+            return -1;
+        }
+        for (int f = FIRST_FOUNDATION; f < FIRST_TABLEAU; f++) {
+            if (canPlayOnFoundation(card, f)) {
+                return Moves.of(pile, f, 1);
+            }
+        }
+        return -1;
+    }
+
+    public int generateMoves(int[] out) {
+        return generateMoves(out, 0);
+    }
+
+    /**
+     * Writes every legal move into {@code out} starting at {@code offset}, which must leave
+     * room for at least {@link #MAX_MOVES} entries, and returns how many were written.
+     * Moves between foundations are left out.
+     */
+    public int generateMoves(int[] out, int offset) {
+        int n = offset;
+        if (sizes[STOCK] > 0) {
+            out[n++] = Moves.DRAW;
+        } else if (sizes[DISCARD] > 0) {
+            out[n++] = Moves.refill(sizes[DISCARD]);
+        }
+        if (sizes[DISCARD] > 0) {
+            n = addMovesOfCard(out, n, DISCARD, 1, topCard(DISCARD), true);
+        }
+        for (int t = FIRST_TABLEAU; t < PILE_COUNT; t++) {
+            int size = sizes[t];
+            for (int i = faceDown[t]; i < size; i++) {
+                n = addMovesOfCard(out, n, t, size - i, cards[t * STRIDE + i], i == size - 1);
+            }
+        }
+        for (int f = FIRST_FOUNDATION; f < FIRST_TABLEAU; f++) {
+            if (sizes[f] > 0) {
+                n = addMovesOfCard(out, n, f, 1, topCard(f), false);
+            }
+        }
+        return n - offset;
+    }
+
+    private int addMovesOfCard(int[] out, int n, int from, int count, int card, boolean toFoundation) {
+        if (toFoundation) {
+            for (int f = FIRST_FOUNDATION; f < FIRST_TABLEAU; f++) {
+                if (canPlayOnFoundation(card, f)) {
+                    out[n++] = Moves.of(from, f, 1);
+                }
+            }
+        }
+        for (int t = FIRST_TABLEAU; t < PILE_COUNT; t++) {
+            if (t != from && canPlayOnTableau(card, t)) {
+                out[n++] = Moves.of(from, t, count);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Applies a move that {@link #isMoveValid(int)} accepted.
+     *
+     * @return the move with {@link Moves#FLIPPED} set if a tableau card was turned up;
+     * pass this value to {@link #undoMove(int)}
+     */
+    public int applyMove(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int count = Moves.count(move);
+
+        if (from == STOCK) {
+            push(DISCARD, pop(STOCK));
+            faceDown[STOCK]--;
+            faceDownCards--;
+            return move;
+        }
+        if (to == STOCK) {
+            reverseInto(DISCARD, STOCK);
+            faceDown[STOCK] = sizes[STOCK];
+            faceDownCards += sizes[STOCK];
+            return move;
+        }
+        transfer(from, to, count);
+        if (isTableau(from) && sizes[from] > 0 && faceDown[from] == sizes[from]) {
+            setFaceDown(from, faceDown[from] - 1);
+            return move | Moves.FLIPPED;
+        }
+        return move & ~Moves.FLIPPED;
+    }
+
+    public void undoMove(int appliedMove) {
+        int from = Moves.from(appliedMove);
+        int to = Moves.to(appliedMove);
+        int count = Moves.count(appliedMove);
+
+        if (from == STOCK) {
+            push(STOCK, pop(DISCARD));
+            faceDown[STOCK]++;
+            faceDownCards++;
+            return;
+        }
+        if (to == STOCK) {
+            faceDownCards -= sizes[STOCK];
+            reverseInto(STOCK, DISCARD);
+            faceDown[STOCK] = 0;
+            return;
+        }
+        if (Moves.isFlipped(appliedMove)) {
+            setFaceDown(from, faceDown[from] + 1);
+        }
+        transfer(to, from, count);
+    }
+
+    private void setFaceDown(int tableau, int count) {
+        hash ^= Zobrist.faceDown(tableau, faceDown[tableau]) ^ Zobrist.faceDown(tableau, count);
+        faceDownCards += count - faceDown[tableau];
+        faceDown[tableau] = count;
+    }
+
+    private void push(int pile, int card) {
+        int height = sizes[pile]++;
+        cards[pile * STRIDE + height] = (byte) card;
+        hash ^= Zobrist.card(card, pile, height);
+    }
+
+    private int pop(int pile) {
+        int height = --sizes[pile];
+        int card = cards[pile * STRIDE + height];
+        hash ^= Zobrist.card(card, pile, height);
+        return card;
+    }
+
+    private void transfer(int from, int to, int count) {
+        int newFromSize = sizes[from] - count;
+        int fromBase = from * STRIDE + newFromSize;
+        int toHeight = sizes[to];
+        for (int i = 0; i < count; i++) {
+            int card = cards[fromBase + i];
+            hash ^= Zobrist.card(card, from, newFromSize + i) ^ Zobrist.card(card, to, toHeight + i);
+        }
+        System.arraycopy(cards, fromBase, cards, to * STRIDE + toHeight, count);
+        sizes[from] = newFromSize;
+        sizes[to] += count;
+        if (isFoundation(from)) {
+            int suit = CardIds.suit(cards[fromBase]);
+            foundationCards -= count;
+            foundationRanks[suit] -= count;
+            if (foundationRanks[suit] == 0) {
+                foundationPiles[suit] = -1;
+            }
+        }
+        if (isFoundation(to)) {
+            int suit = CardIds.suit(cards[fromBase]);
+            foundationCards += count;
+            foundationRanks[suit] += count;
+            foundationPiles[suit] = to;
+        }
+    }
+
+    private void reverseInto(int from, int to) {
+        int size = sizes[from];
+        int fromBase = from * STRIDE;
+        int toBase = to * STRIDE;
+        for (int i = 0; i < size; i++) {
+            int card = cards[fromBase + size - 1 - i];
+            cards[toBase + i] = (byte) card;
+            hash ^= Zobrist.card(card, from, size - 1 - i) ^ Zobrist.card(card, to, i);
+        }
+        sizes[to] = size;
+        sizes[from] = 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof KlondikeState)) {
+            return false;
+        }
+        KlondikeState other = (KlondikeState) o;
+        if (!Arrays.equals(sizes, other.sizes) || !Arrays.equals(faceDown, other.faceDown)) {
+            return false;
+        }
+        for (int p = 0; p < PILE_COUNT; p++) {
+            int base = p * STRIDE;
+            if (!Arrays.equals(cards, base, base + sizes[p], other.cards, base, base + sizes[p])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(sizes);
+        for (int p = 0; p < PILE_COUNT; p++) {
+            for (int i = 0; i < sizes[p]; i++) {
+                result = 31 * result + cards[p * STRIDE + i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < PILE_COUNT; p++) {
+            sb.append(pileName(p)).append(':');
+            for (int i = 0; i < sizes[p]; i++) {
+                sb.append(' ');
+                if (i < faceDown[p]) {
+                    sb.append('[').append(CardIds.toString(card(p, i))).append(']');
+                } else {
+                    sb.append(CardIds.toString(card(p, i)));
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.codecool.klondike.model;
+
+import java.util.Arrays;
+
+/**
+ * History of the moves played in a game, as returned by {@link KlondikeState#applyMove(int)},
+ * in a growable int array: four bytes per move, however long the session.
+ *
+ * The log has a cursor: moves before it have been played, moves after it were undone and
+ * can be redone until a new move is recorded.
+ */
+public class MoveLog {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] moves = new int[INITIAL_CAPACITY];
+    private int size;
+    private int position;
+
+    /**
+     * Appends a played move, dropping the moves that could have been redone.
+     */
+    public void record(int appliedMove) {
+        if (position == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[position++] = appliedMove;
+        size = position;
+    }
+
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    public boolean canRedo() {
+        return position < size;
+    }
+
+    /**
+     * @return the last played move, to pass to {@link KlondikeState#undoMove(int)}
+     */
+    public int undo() {
+        if (!canUndo()) {
+            throw new IllegalStateException("No move to undo");
+        }
+        return moves[--position];
+    }
+
+    /**
+     * @return the last undone move, with the flags it was played with
+     */
+    public int redo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("No move to redo");
+        }
+        return moves[position++];
+    }
+
+    /**
+     * @return number of moves played, not counting undone ones
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * @return number of moves recorded, including undone ones
+     */
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + size);
+        }
+        return moves[index];
+    }
+
+    /**
+     * @return the played moves, oldest first
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(moves, position);
+    }
+
+    public void clear() {
+        size = 0;
+        position = 0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.codecool.klondike.model;
+
+/**
+ * Moves are packed into a single int so they can be stored in primitive arrays:
+ * bits 0-3 source pile, bits 4-7 destination pile, bits 8-13 number of cards moved
+ * and bit 14 set by {@link KlondikeState#applyMove(int)} when the move turned up
+ * a face-down tableau card.
+ */
+public final class Moves {
+    public static final int FLIPPED = 1 << 14;
+    public static final int DRAW = of(KlondikeState.STOCK, KlondikeState.DISCARD, 1);
+
+    private Moves() {
+    }
+
+    public static int of(int from, int to, int count) {
+        return from | to << 4 | count << 8;
+    }
+
+    public static int refill(int discardSize) {
+        return of(KlondikeState.DISCARD, KlondikeState.STOCK, discardSize);
+    }
+
+    public static int from(int move) {
+        return move & 0xF;
+    }
+
+    public static int to(int move) {
+        return (move >>> 4) & 0xF;
+    }
+
+    public static int count(int move) {
+        return (move >>> 8) & 0x3F;
+    }
+
+    public static boolean isFlipped(int move) {
+        return (move & FLIPPED) != 0;
+    }
+
+    public static int withoutFlag(int move) {
+        return move & ~FLIPPED;
+    }
+
+    public static boolean isDraw(int move) {
+        return from(move) == KlondikeState.STOCK;
+    }
+
+    public static boolean isRefill(int move) {
+        return to(move) == KlondikeState.STOCK;
+    }
+
+    public static String toString(int move) {
+        return KlondikeState.pileName(from(move)) + " -> " + KlondikeState.pileName(to(move))
+                + " (" + count(move) + (isFlipped(move) ? ", flip)" : ")");
+    }
+}
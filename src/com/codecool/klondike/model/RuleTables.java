@@ -0,0 +1,53 @@
+package com.codecool.klondike.model;
+
+/**
+ * The placement rules, worked out once for every pair of cards. For each top card, and
+ * for an empty pile at index {@link #EMPTY}, a bit mask over the 52 card ids says which
+ * cards may be put on it, so a rule check is one array load and a bit test.
+ */
+public final class RuleTables {
+    /**
+     * Table index of an empty pile, following the card ids
+     */
+    public static final int EMPTY = CardIds.DECK_SIZE;
+
+    private static final long[] TABLEAU = new long[CardIds.DECK_SIZE + 1];
+    private static final long[] FOUNDATION = new long[CardIds.DECK_SIZE + 1];
+
+    static {
+        for (int card = 0; card < CardIds.DECK_SIZE; card++) {
+            int rank = CardIds.rank(card);
+            if (rank == CardIds.RANKS) {
+                TABLEAU[EMPTY] |= 1L << card;
+            }
+            if (rank == 1) {
+                FOUNDATION[EMPTY] |= 1L << card;
+            }
+            for (int top = 0; top < CardIds.DECK_SIZE; top++) {
+                if (rank + 1 == CardIds.rank(top) && CardIds.isRed(card) != CardIds.isRed(top)) {
+                    TABLEAU[top] |= 1L << card;
+                }
+                if (CardIds.suit(card) == CardIds.suit(top) && rank == CardIds.rank(top) + 1) {
+                    FOUNDATION[top] |= 1L << card;
+                }
+            }
+        }
+    }
+
+    private RuleTables() {
+    }
+
+    /**
+     * @param top the id of the top card of a tableau, or {@link #EMPTY}
+     */
+    public static boolean canPlayOnTableau(int card, int top) {
+        return (TABLEAU[top] & 1L << card) != 0;
+    }
+
+    /**
+     * @param top the id of the top card of a foundation, or {@link #EMPTY}
+     */
+    public static boolean canPlayOnFoundation(int card, int top) {
+        return (FOUNDATION[top] & 1L << card) != 0;
+    }
+}
@@ -0,0 +1,37 @@
+package com.codecool.klondike.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of a {@link KlondikeState}. A position's hash is the XOR
+ * of one key per (card, pile, height in pile) plus one key per tableau face-down count,
+ * so every single-card change updates it with two XORs.
+ */
+final class Zobrist {
+    private static final long SEED = 0x5DEECE66DL;
+    private static final int HEIGHTS = CardIds.DECK_SIZE;
+
+    private static final long[] CARD_KEYS = new long[CardIds.DECK_SIZE * KlondikeState.PILE_COUNT * HEIGHTS];
+    private static final long[] FACE_DOWN_KEYS = new long[KlondikeState.PILE_COUNT * HEIGHTS];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < CARD_KEYS.length; i++) {
+            CARD_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < FACE_DOWN_KEYS.length; i++) {
+            FACE_DOWN_KEYS[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    static long card(int card, int pile, int height) {
+        return CARD_KEYS[(card * KlondikeState.PILE_COUNT + pile) * HEIGHTS + height];
+    }
+
+    static long faceDown(int pile, int count) {
+        return FACE_DOWN_KEYS[pile * HEIGHTS + count];
+    }
+}
@@ -0,0 +1,46 @@
+package com.codecool.klondike.perf;
+
+/**
+ * 95% confidence intervals for rates and averages measured over many games. Rates use
+ * the Wilson score interval, which stays inside 0..1 and behaves at rates near either end;
+ * averages use the normal approximation.
+ */
+public final class ConfidenceInterval {
+    public static final double Z = 1.96;
+
+    private ConfidenceInterval() {
+    }
+
+    public static double wilsonLow(long successes, long trials) {
+        return trials == 0 ? 0 : wilsonCenter(successes, trials) - wilsonHalfWidth(successes, trials);
+    }
+
+    public static double wilsonHigh(long successes, long trials) {
+        return trials == 0 ? 1 : wilsonCenter(successes, trials) + wilsonHalfWidth(successes, trials);
+    }
+
+    private static double wilsonCenter(long successes, long trials) {
+        double p = (double) successes / trials;
+        double z2 = Z * Z / trials;
+        return (p + z2 / 2) / (1 + z2);
+    }
+
+    private static double wilsonHalfWidth(long successes, long trials) {
+        double p = (double) successes / trials;
+        double z2 = Z * Z / trials;
+        return Z * Math.sqrt(p * (1 - p) / trials + z2 / (4 * trials)) / (1 + z2);
+    }
+
+    /**
+     * @return half the width of the interval of the mean of {@code count} values with the
+     * given sum and sum of squares
+     */
+    public static double meanHalfWidth(long count, double sum, double sumOfSquares) {
+        if (count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = sum / count;
+        double variance = Math.max(0, (sumOfSquares - count * mean * mean) / (count - 1));
+        return Z * Math.sqrt(variance / count);
+    }
+}
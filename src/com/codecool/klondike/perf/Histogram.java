@@ -0,0 +1,214 @@
+package com.codecool.klondike.perf;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Counts non-negative values in log-linear buckets, the way HdrHistogram does: each power
+ * of two is split into {@value #HALF_BUCKETS} equal buckets, so every value is kept with a
+ * relative error below 1% across the whole {@code long} range, in a fixed array that
+ * recording never grows.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF_BUCKETS;
+    private static final int TICKS_PER_HALF_DISTANCE = 5;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long max;
+    private double sum;
+    private double sumOfSquares;
+
+    /**
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot record a negative value: " + value);
+        }
+        counts[bucketOf(value)]++;
+        totalCount++;
+        max = Math.max(max, value);
+        sum += value;
+        sumOfSquares += (double) value * value;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    public double getStdDeviation() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, sumOfSquares / totalCount - mean * mean));
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value that counts as equal to the value at the percentile, 0 if
+     * nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen >= target) {
+                return Math.min(max, highestValueOf(bucket));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Adds the values recorded by another histogram, e.g. one per thread.
+     */
+    public void add(Histogram other) {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        totalCount += other.totalCount;
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        max = 0;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    /**
+     * @return the bytes {@link #encode} writes
+     */
+    public int encodedSize() {
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        return 8 + 8 + 8 + 8 + 4 + used * (4 + 8);
+    }
+
+    /**
+     * Writes the distribution: total count, max, sum and sum of squares, then the number of
+     * buckets in use followed by the index and count of each.
+     */
+    public void encode(ByteBuffer out) {
+        out.putLong(totalCount).putLong(max).putDouble(sum).putDouble(sumOfSquares);
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        out.putInt(used);
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            if (counts[bucket] != 0) {
+                out.putInt(bucket).putLong(counts[bucket]);
+            }
+        }
+    }
+
+    /**
+     * @throws IOException if the buffer does not hold a distribution written by {@link #encode}
+     */
+    public static Histogram decode(ByteBuffer in) throws IOException {
+        Histogram histogram = new Histogram();
+        try {
+            histogram.totalCount = in.getLong();
+            histogram.max = in.getLong();
+            histogram.sum = in.getDouble();
+            histogram.sumOfSquares = in.getDouble();
+            int used = in.getInt();
+            for (int i = 0; i < used; i++) {
+                histogram.counts[in.getInt()] = in.getLong();
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupt histogram", e);
+        }
+        return histogram;
+    }
+
+    /**
+     * Prints the distribution in HdrHistogram's percentile format, which its plotting tools
+     * read: a line per percentile, halving the distance to 100% every
+     * {@value #TICKS_PER_HALF_DISTANCE} lines, followed by the summary.
+     *
+     * @param unitScale the recorded values are divided by it, e.g. 1e6 for nanoseconds shown as milliseconds
+     */
+    public void outputPercentileDistribution(PrintStream out, double unitScale) {
+        out.printf("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        if (totalCount > 0) {
+            double level = 0;
+            for (int half = 0; ; half++) {
+                double step = 100 / Math.pow(2, half + 1) / TICKS_PER_HALF_DISTANCE;
+                for (int tick = 0; tick < TICKS_PER_HALF_DISTANCE; tick++, level += step) {
+                    printLine(out, level, unitScale);
+                }
+                if (countAtOrBelow(getValueAtPercentile(level)) == totalCount) {
+                    break;
+                }
+            }
+            out.printf("%12.3f %1.12f %10d%n", max / unitScale, 1.0, totalCount);
+        }
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMean() / unitScale, getStdDeviation() / unitScale);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max / unitScale, totalCount);
+        out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n", Long.SIZE - SUB_BUCKET_BITS + 1, SUB_BUCKETS);
+    }
+
+    private void printLine(PrintStream out, double level, double unitScale) {
+        long value = getValueAtPercentile(level);
+        double fraction = level / 100;
+        out.printf("%12.3f %1.12f %10d %14.2f%n", value / unitScale, fraction, countAtOrBelow(value), 1 / (1 - fraction));
+    }
+
+    private long countAtOrBelow(long value) {
+        long count = 0;
+        for (int bucket = 0; bucket <= bucketOf(value); bucket++) {
+            count += counts[bucket];
+        }
+        return count;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_BUCKETS + (int) (value >>> shift) - HALF_BUCKETS;
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF_BUCKETS + 1;
+        long lowest = (long) ((bucket - SUB_BUCKETS) % HALF_BUCKETS + HALF_BUCKETS) << shift;
+        long highest = lowest + (1L << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
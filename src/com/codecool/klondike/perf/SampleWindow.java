@@ -0,0 +1,54 @@
+package com.codecool.klondike.perf;
+
+import java.util.Arrays;
+
+/**
+ * The last few values recorded, in a ring buffer, for percentiles of recent behaviour
+ * only. Recording overwrites the oldest value; percentiles sort a copy, so they are meant
+ * to be read a few times a second rather than per sample.
+ */
+public class SampleWindow {
+    private final long[] samples;
+    private final long[] sorted;
+    private int next;
+    private int size;
+
+    public SampleWindow(int capacity) {
+        samples = new long[capacity];
+        sorted = new long[capacity];
+    }
+
+    public void record(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the most recent value, or 0 if there is none
+     */
+    public long last() {
+        return size == 0 ? 0 : samples[(next + samples.length - 1) % samples.length];
+    }
+
+    /**
+     * Fills {@code out} with the values at the given percentiles (0 to 100) of the window,
+     * or with zeros if it is empty.
+     */
+    public void percentiles(double[] percentiles, long[] out) {
+        if (size == 0) {
+            Arrays.fill(out, 0);
+            return;
+        }
+        System.arraycopy(samples, 0, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * size) - 1;
+            out[i] = sorted[Math.max(0, Math.min(size - 1, rank))];
+        }
+    }
+}
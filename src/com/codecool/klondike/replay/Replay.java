@@ -0,0 +1,80 @@
+package com.codecool.klondike.replay;
+
+import com.codecool.klondike.model.DealGenerator;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A recorded game: the seed of its deal (see {@link DealGenerator}) and the moves played,
+ * as returned by {@code KlondikeState.applyMove}. Together they reproduce every position
+ * of the game.
+ *
+ * File layout, big-endian: magic number and format version (two ints), seed (long),
+ * number of moves (int), then the moves packed as in {@link com.codecool.klondike.model.Moves}.
+ */
+public class Replay {
+    public static final String FILE_EXTENSION = ".replay";
+
+    private static final int MAGIC = 0x4B4C5250;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+    private final long seed;
+    private final int[] moves;
+
+    public Replay(long seed, int[] moves) {
+        this.seed = seed;
+        this.moves = moves;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int[] getMoves() {
+        return moves;
+    }
+
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + moves.length * 4);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(seed).putInt(moves.length);
+        buffer.asIntBuffer().put(moves);
+        buffer.rewind();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static Replay read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("File shrank while reading it");
+                }
+            }
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a replay, or recorded by another version: " + file);
+            }
+            long seed = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || count != buffer.remaining() / 4) {
+                throw new IOException("Truncated replay: " + file);
+            }
+            int[] moves = new int[count];
+            buffer.asIntBuffer().get(moves);
+            return new Replay(seed, moves);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated replay: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.codecool.klondike.replay;
+
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Plays replays headless at full speed against the current rules. Every move must be
+ * legal in the position it was recorded in and must turn up a card exactly when it did
+ * when recorded, so a corpus of recorded games catches rule regressions.
+ */
+public class ReplayEngine {
+
+    /**
+     * @return the index of the first move that is illegal or plays out differently than
+     * recorded, or -1 if the whole replay checks out
+     */
+    public int verify(Replay replay) {
+        KlondikeState state = DealGenerator.deal(replay.getSeed());
+        int[] moves = replay.getMoves();
+        for (int i = 0; i < moves.length; i++) {
+            int move = Moves.withoutFlag(moves[i]);
+            if (!state.isMoveValid(move) || state.applyMove(move) != moves[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Plays random legal moves from a seeded deal, for building test corpora.
+     */
+    public static Replay randomGame(long seed, int maxMoves, SplittableRandom random) {
+        KlondikeState state = DealGenerator.deal(seed);
+        int[] legal = new int[KlondikeState.MAX_MOVES];
+        int[] moves = new int[maxMoves];
+        int played = 0;
+        while (played < maxMoves && !state.isWon()) {
+            int count = state.generateMoves(legal);
+            if (count == 0) {
+                break;
+            }
+            moves[played++] = state.applyMove(legal[random.nextInt(count)]);
+        }
+        return new Replay(seed, Arrays.copyOf(moves, played));
+    }
+
+    private static List<Path> replayFiles(String[] paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String path : paths) {
+            Path file = Paths.get(path);
+            if (Files.isDirectory(file)) {
+                try (Stream<Path> listing = Files.list(file)) {
+                    files.addAll(listing.filter(p -> p.toString().endsWith(Replay.FILE_EXTENSION))
+                            .sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Verifies replay files, or whole directories of them, and prints the failures and the
+     * replay speed. {@code --random <directory> <games> [moves] [firstSeed]} records a
+     * corpus of random games to check later.
+     * Usage: {@code ReplayEngine <file|directory>...}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("--random")) {
+            Path directory = Files.createDirectories(Paths.get(args[1]));
+            int games = Integer.parseInt(args[2]);
+            int maxMoves = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+            long firstSeed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+            SplittableRandom random = new SplittableRandom(firstSeed);
+            for (long seed = firstSeed; seed < firstSeed + games; seed++) {
+                randomGame(seed, maxMoves, random).write(directory.resolve("deal-" + seed + Replay.FILE_EXTENSION));
+            }
+            System.out.println("Recorded " + games + " games in " + directory);
+            return;
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayEngine <file|directory>...");
+            System.err.println("       ReplayEngine --random <directory> <games> [moves] [firstSeed]");
+            System.exit(1);
+        }
+
+        List<Replay> replays = new ArrayList<>();
+        List<Path> files = replayFiles(args);
+        for (Path file : files) {
+            replays.add(Replay.read(file));
+        }
+        ReplayEngine engine = new ReplayEngine();
+        long moves = 0;
+        int failures = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < replays.size(); i++) {
+            Replay replay = replays.get(i);
+            int failed = engine.verify(replay);
+            if (failed >= 0) {
+                failures++;
+                System.out.println(files.get(i) + ": move " + (failed + 1) + " ("
+                        + Moves.toString(replay.getMoves()[failed]) + ") no longer plays as recorded");
+                moves += failed;
+            } else {
+                moves += replay.getMoves().length;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d replays, %d failed, %d moves in %.3f s (%.0f moves/s)%n",
+                replays.size(), failures, moves, seconds, moves / seconds);
+        if (failures > 0) {
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.codecool.klondike.server;
+
+import com.codecool.klondike.model.CardIds;
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves any number of games at once over HTTP, without JavaFX, for bots, automated
+ * tests and remote clients. Each request runs on a virtual thread of its own when the JDK
+ * has them (21 and later), on a fixed pool of platform threads before that.
+ *
+ * <pre>
+ * POST   /games[?seed=N]                      deal a game, random unless a seed is given
+ * GET    /games/{id}                          the position
+ * GET    /games/{id}/moves                    the legal moves
+ * POST   /games/{id}/moves?from=F&amp;to=T[&amp;count=C]  play a move; piles are numbered as in
+ *                                             {@link KlondikeState}, 0 the stock
+ * POST   /games/{id}/undo                     take the last move back
+ * DELETE /games/{id}                          end the game
+ * </pre>
+ *
+ * Positions come back as JSON. An illegal move or an undo with nothing to undo is answered
+ * with 409 and the position is unchanged.
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 8377;
+
+    private static final int BACKLOG = 1024;
+    private static final int FALLBACK_THREADS = 64;
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    static {
+        // The JDK server leaves Nagle's algorithm on, so every small response waited for the
+        // client's delayed acknowledgement, some 40 ms. It reads the setting once, when the
+        // first server is created.
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+    }
+
+    private final HttpServer http;
+    private final ExecutorService executor = perTaskExecutor(FALLBACK_THREADS);
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * @param address where to listen; the server is meant for the local machine and has no
+     *                authentication
+     */
+    public GameServer(InetSocketAddress address) throws IOException {
+        http = HttpServer.create(address, BACKLOG);
+        http.createContext("/games", this::handle);
+        http.setExecutor(executor);
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    /**
+     * Stops listening, giving the requests being served up to the given time to finish.
+     */
+    public void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    Session createSession(long seed) {
+        Session session = new Session(nextId.getAndIncrement(), seed);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task if the JDK has them, otherwise
+     * a fixed pool of platform threads
+     */
+    static ExecutorService perTaskExecutor(int fallbackThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(fallbackThreads);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            if (path.length == 2) {
+                if (!method.equals("POST")) {
+                    error(exchange, 405, "Use POST to deal a game");
+                    return;
+                }
+                long seed = query.containsKey("seed") ? Long.parseLong(query.get("seed")) : DealGenerator.randomSeed();
+                respond(exchange, 201, createSession(seed).describe());
+                return;
+            }
+            Session session = path.length <= 4 ? sessions.get(Long.parseLong(path[2])) : null;
+            if (session == null) {
+                error(exchange, 404, "No such game");
+                return;
+            }
+            String action = path.length == 4 ? path[3] : "";
+            switch (method + " " + action) {
+                case "GET ":
+                    respond(exchange, 200, session.describe());
+                    break;
+                case "DELETE ":
+                    sessions.remove(session.getId());
+                    respond(exchange, 200, "{\"id\":" + session.getId() + "}");
+                    break;
+                case "GET moves":
+                    respond(exchange, 200, session.legalMoves());
+                    break;
+                case "POST moves":
+                    play(exchange, session, query);
+                    break;
+                case "POST undo":
+                    String position = session.undo();
+                    if (position == null) {
+                        error(exchange, 409, "No move to undo");
+                    } else {
+                        respond(exchange, 200, position);
+                    }
+                    break;
+                default:
+                    error(exchange, 405, "Not supported: " + method + " " + exchange.getRequestURI().getPath());
+            }
+        } catch (NumberFormatException e) {
+            error(exchange, 400, "Not a number: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Request " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed: " + e);
+            error(exchange, 500, e.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void play(HttpExchange exchange, Session session, Map<String, String> query) throws IOException {
+        if (!query.containsKey("from") || !query.containsKey("to")) {
+            error(exchange, 400, "A move needs from and to");
+            return;
+        }
+        int from = Integer.parseInt(query.get("from"));
+        int to = Integer.parseInt(query.get("to"));
+        int count = query.containsKey("count") ? Integer.parseInt(query.get("count")) : 0;
+        if (from < 0 || from >= KlondikeState.PILE_COUNT || to < 0 || to >= KlondikeState.PILE_COUNT
+                || count < 0 || count > CardIds.DECK_SIZE) {
+            error(exchange, 400, "No such pile or card count");
+            return;
+        }
+        String position = session.play(from, to, count);
+        if (position == null) {
+            error(exchange, 409, "Illegal move");
+        } else {
+            respond(exchange, 200, position);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(pair.substring(0, equals), pair.substring(equals + 1));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Usage: {@code GameServer [port]}; listens on the loopback address only.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.start();
+        System.out.println("Serving games on http://localhost:" + server.getPort() + "/games");
+    }
+}
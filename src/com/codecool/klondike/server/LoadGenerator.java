@@ -0,0 +1,173 @@
+package com.codecool.klondike.server;
+
+import com.codecool.klondike.perf.Histogram;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives a {@link GameServer} the way bots would: each client deals a game, then asks for
+ * the legal moves and plays one at random until there are none or it has played
+ * {@value #MOVES_PER_GAME}, and deals the next. At the end it prints the requests served
+ * per second and the percentiles of the time to play a move. Without a URL it starts a
+ * server in the same JVM.
+ *
+ * With {@code --idle} it instead opens sessions on an in-process server, plays a few moves
+ * in each and reports the heap they hold.
+ */
+public class LoadGenerator {
+    private static final int MOVES_PER_GAME = 200;
+    private static final int IDLE_MOVES = 20;
+    private static final Pattern MOVE = Pattern.compile("\\{\"from\":(\\d+),\"to\":(\\d+),\"count\":(\\d+)}");
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final String baseUrl;
+
+    private LoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    private static final class ClientResult {
+        final Histogram moveLatency = new Histogram();
+        long requests;
+        long games;
+    }
+
+    private ClientResult runClient(long seed, long deadline) throws IOException, InterruptedException {
+        ClientResult result = new ClientResult();
+        Random random = new Random(seed);
+        while (System.nanoTime() < deadline) {
+            Matcher id = ID.matcher(send("POST", baseUrl + "?seed=" + random.nextInt(1_000_000), 201));
+            if (!id.find()) {
+                throw new IOException("No game id in the response");
+            }
+            String game = baseUrl + "/" + id.group(1);
+            result.requests++;
+            for (int played = 0; played < MOVES_PER_GAME && System.nanoTime() < deadline; played++) {
+                List<String> moves = new ArrayList<>();
+                Matcher move = MOVE.matcher(send("GET", game + "/moves", 200));
+                while (move.find()) {
+                    moves.add("?from=" + move.group(1) + "&to=" + move.group(2) + "&count=" + move.group(3));
+                }
+                result.requests++;
+                if (moves.isEmpty()) {
+                    break;
+                }
+                long start = System.nanoTime();
+                send("POST", game + "/moves" + moves.get(random.nextInt(moves.size())), 200);
+                result.moveLatency.record(System.nanoTime() - start);
+                result.requests++;
+            }
+            send("DELETE", game, 200);
+            result.requests++;
+            result.games++;
+        }
+        return result;
+    }
+
+    private String send(String method, String url, int expectedStatus) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != expectedStatus) {
+            throw new IOException(method + " " + url + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private void run(int clients, int seconds) throws Exception {
+        ExecutorService executor = GameServer.perTaskExecutor(clients);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<ClientResult>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            long seed = i;
+            futures.add(executor.submit(() -> runClient(seed, deadline)));
+        }
+        Histogram moveLatency = new Histogram();
+        long requests = 0;
+        long games = 0;
+        for (Future<ClientResult> future : futures) {
+            ClientResult result = future.get();
+            moveLatency.add(result.moveLatency);
+            requests += result.requests;
+            games += result.games;
+        }
+        executor.shutdown();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d clients, %.1f s: %d games, %d requests, %.0f requests/s, %.0f moves/s%n",
+                clients, elapsed, games, requests, requests / elapsed, moveLatency.getTotalCount() / elapsed);
+        System.out.printf("Move latency: p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                moveLatency.getValueAtPercentile(50) / 1e6, moveLatency.getValueAtPercentile(90) / 1e6,
+                moveLatency.getValueAtPercentile(99) / 1e6, moveLatency.getMax() / 1e6);
+    }
+
+    private static void measureIdleSessions(int count) throws IOException {
+        GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Random random = new Random(1);
+        long before = usedHeap();
+        for (int i = 0; i < count; i++) {
+            Session session = server.createSession(random.nextInt(1_000_000));
+            for (int played = 0; played < IDLE_MOVES; played++) {
+                Matcher move = MOVE.matcher(session.legalMoves());
+                if (!move.find()) {
+                    break;
+                }
+                session.play(Integer.parseInt(move.group(1)), Integer.parseInt(move.group(2)),
+                        Integer.parseInt(move.group(3)));
+            }
+        }
+        long used = usedHeap() - before;
+        System.out.printf("%d idle sessions (%d moves each at most): %.1f MB, %d bytes per session%n",
+                server.getSessionCount(), IDLE_MOVES, used / 1e6, used / count);
+        server.stop(0);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Usage: {@code LoadGenerator [clients] [seconds] [url]} or {@code LoadGenerator --idle [sessions]}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--idle")) {
+            measureIdleSessions(args.length > 1 ? Integer.parseInt(args[1]) : 100_000);
+            return;
+        }
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        GameServer server = null;
+        String url;
+        if (args.length > 2) {
+            url = args[2];
+        } else {
+            server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.start();
+            url = "http://127.0.0.1:" + server.getPort() + "/games";
+        }
+        new LoadGenerator(url).run(clients, seconds);
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.codecool.klondike.server;
+
+import com.codecool.klondike.model.CardIds;
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+
+import java.util.Arrays;
+
+/**
+ * One game played through the {@link GameServer}.
+ *
+ * Between requests a session keeps only its position packed into
+ * {@value KlondikeState#PACKED_SIZE} bytes and the moves played, two bytes each (a move as
+ * returned by {@link KlondikeState#applyMove} fits in 15 bits), so an idle session takes
+ * a few hundred bytes. Each request unpacks the position, works on it and packs it back,
+ * holding the session's monitor so requests to one session run one at a time.
+ *
+ * Responses are JSON. Face-down cards are only counted, never named.
+ */
+final class Session {
+    private static final short[] NO_MOVES = {};
+    private static final int INITIAL_MOVES = 32;
+
+    private final long id;
+    private final long seed;
+    private final byte[] position = new byte[KlondikeState.PACKED_SIZE];
+    private short[] moves = NO_MOVES;
+    private int moveCount;
+
+    Session(long id, long seed) {
+        this.id = id;
+        this.seed = seed;
+        DealGenerator.deal(seed).pack(position);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    synchronized String describe() {
+        return describe(unpack());
+    }
+
+    /**
+     * @return the legal moves as a JSON array
+     */
+    synchronized String legalMoves() {
+        KlondikeState state = unpack();
+        int[] legal = new int[KlondikeState.MAX_MOVES];
+        int count = state.generateMoves(legal);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"from\":").append(Moves.from(legal[i]))
+                    .append(",\"to\":").append(Moves.to(legal[i]))
+                    .append(",\"count\":").append(Moves.count(legal[i])).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Plays a move under the rules of {@code Game.isMoveValid}.
+     *
+     * @param count the cards moved; 0 for one card, or the whole discard pile when it goes
+     *              back to the stock
+     * @return the position after the move, or null if the move is not legal
+     */
+    synchronized String play(int from, int to, int count) {
+        KlondikeState state = unpack();
+        if (count == 0) {
+            count = from == KlondikeState.DISCARD && to == KlondikeState.STOCK ? state.size(KlondikeState.DISCARD) : 1;
+        }
+        int move = Moves.of(from, to, count);
+        if (!state.isMoveValid(move)) {
+            return null;
+        }
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(INITIAL_MOVES, moves.length * 2));
+        }
+        moves[moveCount++] = (short) state.applyMove(move);
+        state.pack(position);
+        return describe(state);
+    }
+
+    /**
+     * @return the position before the last move, or null if no move was played
+     */
+    synchronized String undo() {
+        if (moveCount == 0) {
+            return null;
+        }
+        KlondikeState state = unpack();
+        state.undoMove(moves[--moveCount]);
+        state.pack(position);
+        return describe(state);
+    }
+
+    private KlondikeState unpack() {
+        KlondikeState state = new KlondikeState();
+        state.unpack(position);
+        return state;
+    }
+
+    private String describe(KlondikeState state) {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"id\":").append(id)
+                .append(",\"seed\":").append(seed)
+                .append(",\"moves\":").append(moveCount)
+                .append(",\"won\":").append(state.isWon())
+                .append(",\"piles\":[");
+        for (int p = 0; p < KlondikeState.PILE_COUNT; p++) {
+            if (p > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"").append(KlondikeState.pileName(p))
+                    .append("\",\"down\":").append(state.faceDownCount(p))
+                    .append(",\"up\":[");
+            for (int i = state.faceDownCount(p); i < state.size(p); i++) {
+                if (i > state.faceDownCount(p)) {
+                    json.append(',');
+                }
+                json.append('"').append(CardIds.toString(state.card(p, i))).append('"');
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+}
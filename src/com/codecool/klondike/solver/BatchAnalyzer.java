@@ -0,0 +1,241 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.model.DealGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solves every deal in a seed range and streams one fixed-width record per deal to a file
+ * as soon as it is solved. A fixed number of worker threads, each with its own
+ * {@link Solver}, pull seeds from a shared counter and hand results to a writer thread
+ * through a bounded queue, so memory use does not depend on the size of the range.
+ * If a worker fails, the others stop taking seeds and {@link #run} throws once they are
+ * done; the file then holds the deals solved so far.
+ *
+ * File layout: the magic number and format version (two ints), then records of
+ * {@value #RECORD_SIZE} bytes in completion order: seed (long), status ordinal (byte),
+ * solution length (short), nodes searched (long), solving time in microseconds (int).
+ */
+public class BatchAnalyzer {
+    static final int MAGIC = 0x4B4C4241;
+    static final int VERSION = 1;
+    static final int RECORD_SIZE = 8 + 1 + 2 + 8 + 4;
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int WRITE_BATCH = 1024;
+    private static final long REPORT_INTERVAL_NANOS = 10_000_000_000L;
+    private static final long[] FAILED = new long[0];
+
+    private final long firstSeed;
+    private final long endSeed;
+    private final int threads;
+    private final long maxNodes;
+
+    private final AtomicLong nextSeed = new AtomicLong();
+    private final BlockingQueue<long[]> results = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile IllegalStateException failure;
+
+    /**
+     * @param firstSeed first seed to solve
+     * @param endSeed   seed after the last one to solve
+     * @param threads   number of solving threads
+     * @param maxNodes  node budget per deal
+     */
+    public BatchAnalyzer(long firstSeed, long endSeed, int threads, long maxNodes) {
+        this.firstSeed = firstSeed;
+        this.endSeed = endSeed;
+        this.threads = threads;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * @throws IllegalStateException if a worker failed to solve a deal
+     */
+    public void run(Path output) throws IOException, InterruptedException {
+        nextSeed.set(firstSeed);
+        results.clear();
+        failure = null;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::solveSeeds, "batch-solver-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        long total = endSeed - firstSeed;
+        long written = 0;
+        long won = 0;
+        long start = System.nanoTime();
+        long lastReport = start;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * WRITE_BATCH);
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION);
+            while (written < total) {
+                long[] result = results.take();
+                if (result == FAILED) {
+                    drain(buffer, channel);
+                    throw failure;
+                }
+                if (result[1] == SolveResult.Status.WON.ordinal()) {
+                    won++;
+                }
+                buffer.putLong(result[0])
+                        .put((byte) result[1])
+                        .putShort((short) result[2])
+                        .putLong(result[3])
+                        .putInt((int) result[4]);
+                written++;
+                if (buffer.remaining() < RECORD_SIZE || results.isEmpty()) {
+                    drain(buffer, channel);
+                }
+                long now = System.nanoTime();
+                if (now - lastReport > REPORT_INTERVAL_NANOS) {
+                    lastReport = now;
+                    report(written, won, total, now - start);
+                }
+            }
+            drain(buffer, channel);
+        } finally {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        report(written, won, total, System.nanoTime() - start);
+    }
+
+    /**
+     * Solves seeds until they run out. Anything thrown, errors such as running out of
+     * memory for the solver's table included, stops the run through {@link #fail}, as
+     * otherwise the writer would wait for the record of this seed for ever.
+     */
+    private void solveSeeds() {
+        long seed = 0;
+        boolean solving = false;
+        try {
+            Solver solver = new Solver(Solver.DEFAULT_TABLE_BITS, maxNodes, false);
+            while ((seed = nextSeed.getAndIncrement()) < endSeed) {
+                solving = true;
+                SolveResult result = solver.solve(DealGenerator.deal(seed));
+                results.put(new long[]{seed, result.getStatus().ordinal(), result.getSolution().length,
+                        result.getNodes(), result.getElapsedNanos() / 1000});
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            fail(new IllegalStateException(solving ? "Solving deal " + seed + " failed: " + e
+                    : "Cannot create a solver: " + e, e));
+        }
+    }
+
+    /**
+     * Stops the workers from taking more seeds and wakes the writer.
+     */
+    private void fail(IllegalStateException e) {
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            failure = e;
+        }
+        nextSeed.set(endSeed);
+        try {
+            results.put(FAILED);
+        } catch (InterruptedException interrupted) {
+            // the writer has stopped already
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void report(long written, long won, long total, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%d/%d deals, %.1f%% won, %.0f deals/s%n",
+                written, total, written == 0 ? 0 : won * 100.0 / written, written / seconds);
+    }
+
+    /**
+     * Prints win rate and search statistics of a result file.
+     */
+    public static void summarize(Path input) throws IOException {
+        long[] byStatus = new long[SolveResult.Status.values().length];
+        long deals = 0;
+        long lengthSum = 0;
+        long nodeSum = 0;
+        long micros = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(input)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a batch result file: " + input);
+            }
+            while (true) {
+                try {
+                    in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                int status = in.readByte();
+                int length = in.readShort();
+                byStatus[status]++;
+                if (status == SolveResult.Status.WON.ordinal()) {
+                    lengthSum += length;
+                }
+                nodeSum += in.readLong();
+                micros += in.readInt();
+                deals++;
+            }
+        }
+        System.out.println("Deals: " + deals);
+        for (SolveResult.Status status : SolveResult.Status.values()) {
+            System.out.printf("%-13s %d (%.2f%%)%n", status, byStatus[status.ordinal()],
+                    deals == 0 ? 0 : byStatus[status.ordinal()] * 100.0 / deals);
+        }
+        long won = byStatus[SolveResult.Status.WON.ordinal()];
+        System.out.printf("Average solution length: %.1f%n", won == 0 ? 0 : (double) lengthSum / won);
+        System.out.printf("Average nodes: %.0f, average time: %.2f ms%n",
+                deals == 0 ? 0 : (double) nodeSum / deals, deals == 0 ? 0 : micros / 1000.0 / deals);
+    }
+
+    /**
+     * Usage: {@code BatchAnalyzer <firstSeed> <endSeed> <output> [threads] [maxNodes]}
+     * or {@code BatchAnalyzer --summary <file>}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals("--summary")) {
+            summarize(Paths.get(args[1]));
+            return;
+        }
+        if (args.length < 3) {
+            System.err.println("Usage: BatchAnalyzer <firstSeed> <endSeed> <output> [threads] [maxNodes]");
+            System.err.println("       BatchAnalyzer --summary <file>");
+            System.exit(1);
+        }
+        long firstSeed = Long.parseLong(args[0]);
+        long endSeed = Long.parseLong(args[1]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long maxNodes = args.length > 4 ? Long.parseLong(args[4]) : Solver.DEFAULT_MAX_NODES;
+        new BatchAnalyzer(firstSeed, endSeed, threads, maxNodes).run(Paths.get(args[2]));
+    }
+}
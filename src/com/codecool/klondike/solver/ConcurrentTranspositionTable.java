@@ -0,0 +1,88 @@
+package com.codecool.klondike.solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free {@link TranspositionTable} shared by the threads of a {@link ParallelSolver}.
+ * Each entry is one long: the upper 48 bits of the key and a 16-bit depth, so entries are
+ * updated with a single compare-and-set. Buckets and replacement work like in
+ * {@link LocalTranspositionTable}; a replacement that loses a race simply drops one entry.
+ */
+public class ConcurrentTranspositionTable implements TranspositionTable {
+    private static final int BUCKET_SIZE = 4;
+    private static final long DEPTH_MASK = 0xFFFFL;
+    private static final long EMPTY = 0L;
+
+    private final AtomicLongArray entries;
+    private final int bucketMask;
+    private final LongAdder occupied = new LongAdder();
+
+    /**
+     * @param capacityPow2 log2 of the number of entries
+     */
+    public ConcurrentTranspositionTable(int capacityPow2) {
+        int capacity = 1 << capacityPow2;
+        entries = new AtomicLongArray(capacity);
+        bucketMask = capacity / BUCKET_SIZE - 1;
+    }
+
+    @Override
+    public boolean visit(long key, int depth) {
+        long tag = key & ~DEPTH_MASK;
+        if (tag == EMPTY) {
+            tag = DEPTH_MASK + 1;
+        }
+        long entry = tag | depth;
+        int base = (int) ((key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+        int victim = base;
+        long victimDepth = -1;
+
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long stored = entries.get(i);
+            if (stored == EMPTY) {
+                if (entries.compareAndSet(i, EMPTY, entry)) {
+                    occupied.increment();
+                    return true;
+                }
+                stored = entries.get(i);
+            }
+            if ((stored & ~DEPTH_MASK) == tag) {
+                while ((stored & DEPTH_MASK) > depth) {
+                    if (entries.compareAndSet(i, stored, entry)) {
+                        return true;
+                    }
+                    stored = entries.get(i);
+                    if ((stored & ~DEPTH_MASK) != tag) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if ((stored & DEPTH_MASK) > victimDepth) {
+                victim = i;
+                victimDepth = stored & DEPTH_MASK;
+            }
+        }
+        entries.set(victim, entry);
+        return true;
+    }
+
+    @Override
+    public int capacity() {
+        return entries.length();
+    }
+
+    @Override
+    public long occupied() {
+        return occupied.sum();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, EMPTY);
+        }
+        occupied.reset();
+    }
+}
@@ -0,0 +1,86 @@
+package com.codecool.klondike.solver;
+
+import java.util.Arrays;
+
+/**
+ * Single-threaded {@link TranspositionTable}. Keys and depths live in primitive arrays,
+ * grouped into buckets of {@value #BUCKET_SIZE}; when a bucket is full the entry reached
+ * at the greatest depth is replaced, so memory never grows beyond the initial allocation.
+ */
+public class LocalTranspositionTable implements TranspositionTable {
+    static final int BUCKET_SIZE = 4;
+    private static final long EMPTY = 0L;
+
+    private final long[] keys;
+    private final short[] depths;
+    private final int bucketMask;
+    private long occupied;
+    private long replacements;
+
+    /**
+     * @param capacityPow2 log2 of the number of entries
+     */
+    public LocalTranspositionTable(int capacityPow2) {
+        int capacity = 1 << capacityPow2;
+        keys = new long[capacity];
+        depths = new short[capacity];
+        bucketMask = capacity / BUCKET_SIZE - 1;
+    }
+
+    @Override
+    public boolean visit(long key, int depth) {
+        if (key == EMPTY) {
+            key = 1;
+        }
+        int base = bucketIndex(key);
+        int victim = base;
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long stored = keys[i];
+            if (stored == key) {
+                if (depths[i] <= depth) {
+                    return false;
+                }
+                depths[i] = (short) depth;
+                return true;
+            }
+            if (stored == EMPTY) {
+                keys[i] = key;
+                depths[i] = (short) depth;
+                occupied++;
+                return true;
+            }
+            if (depths[i] > depths[victim]) {
+                victim = i;
+            }
+        }
+        keys[victim] = key;
+        depths[victim] = (short) depth;
+        replacements++;
+        return true;
+    }
+
+    private int bucketIndex(long key) {
+        return (int) ((key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+
+    @Override
+    public int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public long occupied() {
+        return occupied;
+    }
+
+    public long replacements() {
+        return replacements;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        occupied = 0;
+        replacements = 0;
+    }
+}
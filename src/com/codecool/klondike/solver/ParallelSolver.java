@@ -0,0 +1,147 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves one deal on several threads. The top {@code splitDepth} levels of the move tree
+ * are turned into {@link ForkJoinPool} tasks, so idle workers steal subtrees from busy
+ * ones; below that every task runs a sequential {@link Search}. All threads share one
+ * {@link ConcurrentTranspositionTable}, so a position explored by one thread is skipped
+ * by the others.
+ */
+public class ParallelSolver {
+    public static final int DEFAULT_SPLIT_DEPTH = 4;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final ThreadLocal<Search> searches;
+    private final long maxNodes;
+    private final boolean findShortest;
+    private final int splitDepth;
+
+    public ParallelSolver(int threads) {
+        this(threads, Solver.DEFAULT_TABLE_BITS + 2, Solver.DEFAULT_MAX_NODES, false, DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * @param threads      number of worker threads
+     * @param tableBits    log2 of the shared transposition table size
+     * @param maxNodes     node budget of one {@link #solve} call, summed over all threads
+     * @param findShortest keep searching for shorter lines after the first win
+     * @param splitDepth   number of tree levels split into separate tasks
+     */
+    public ParallelSolver(int threads, int tableBits, long maxNodes, boolean findShortest, int splitDepth) {
+        this.pool = new ForkJoinPool(threads);
+        this.table = new ConcurrentTranspositionTable(tableBits);
+        this.searches = ThreadLocal.withInitial(() -> new Search(table));
+        this.maxNodes = maxNodes;
+        this.findShortest = findShortest;
+        this.splitDepth = splitDepth;
+    }
+
+    public SolveResult solve(KlondikeState start) {
+        long startTime = System.nanoTime();
+        SearchControl control = new SearchControl(maxNodes, findShortest);
+        table.clear();
+        pool.invoke(new SearchTask(control, new KlondikeState(start), new int[0], 0));
+        return control.toResult(System.nanoTime() - startTime, table);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SearchControl control;
+        private final KlondikeState state;
+        private final int[] prefix;
+        private final int level;
+
+        SearchTask(SearchControl control, KlondikeState state, int[] prefix, int level) {
+            this.control = control;
+            this.state = state;
+            this.prefix = prefix;
+            this.level = level;
+        }
+
+        @Override
+        protected void compute() {
+            if (control.shouldStop()) {
+                return;
+            }
+            // The thread's search must be released before joining: a joining worker may run
+            // another task, which reuses the same search.
+            Search search = searches.get();
+            int depth = search.load(control, state, prefix);
+            if (level >= splitDepth) {
+                search.run(0, depth);
+                search.flushNodes();
+                return;
+            }
+
+            int count = search.expand(0, depth);
+            List<SearchTask> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int end = search.apply(search.move(0, i), depth);
+                children.add(new SearchTask(control, new KlondikeState(search.state),
+                        Arrays.copyOf(search.path, end), level + 1));
+                search.undo(end, depth);
+            }
+            search.flushNodes();
+            invokeAll(children);
+        }
+    }
+
+    /**
+     * Solves the same seeded deals with 1, 2, 4, 8 and 16 threads (or the counts given)
+     * and prints the time and speedup of each run.
+     * Usage: {@code ParallelSolver [deals] [seed] [threads,...]}
+     */
+    public static void main(String[] args) {
+        int deals = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        String threadCounts = args.length > 2 ? args[2] : "1,2,4,8,16";
+
+        List<KlondikeState> states = new ArrayList<>();
+        for (long i = seed; i < seed + deals; i++) {
+            states.add(DealGenerator.deal(i));
+        }
+
+        double baseline = 0;
+        System.out.println("Cores available: " + Runtime.getRuntime().availableProcessors());
+        for (String count : threadCounts.split(",")) {
+            int threads = Integer.parseInt(count.trim());
+            ParallelSolver solver = new ParallelSolver(threads);
+            long nodes = 0;
+            int won = 0;
+            long start = System.nanoTime();
+            for (KlondikeState state : states) {
+                SolveResult result = solver.solve(state);
+                nodes += result.getNodes();
+                if (result.isWon()) {
+                    won++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            solver.shutdown();
+            if (baseline == 0) {
+                baseline = seconds;
+            }
+            System.out.printf("%2d threads: %d/%d won, %.2f s, %.0f nodes/s, speedup %.2fx%n",
+                    threads, won, deals, seconds, nodes / seconds, baseline / seconds);
+        }
+    }
+}
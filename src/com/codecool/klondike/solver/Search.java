@@ -0,0 +1,259 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.model.CardIds;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+
+/**
+ * One thread's depth-first branch-and-bound search for a winning line, using the move rules of
+ * {@link KlondikeState}. Positions are deduplicated through a bounded
+ * {@link TranspositionTable} keyed by the state's incremental Zobrist hash. The node
+ * budget, the best line and the stop flags are shared through a {@link SearchControl},
+ * while the length bound used for pruning is kept per search and refreshed from it.
+ *
+ * Drawing and recycling the stock only changes which talon card is on top, so instead of
+ * single draws the search plays any talon card directly, expanding it into the draws and
+ * refills needed to bring it up. Unless the shortest line is requested, positions that
+ * differ only in the talon split are treated as one.
+ *
+ * To keep the tree small, cards that are provably safe to put on a foundation are played
+ * immediately, partial tableau runs are only moved when that frees a card for a
+ * foundation, kings are never moved from the bottom of one pile to an empty one and
+ * aces and twos never leave the foundations.
+ */
+final class Search {
+    static final int MAX_DEPTH = 1024;
+
+    private static final int NODE_BATCH = 4096;
+    private static final int SORT_SHIFT = 16;
+    private static final int MOVE_MASK = (1 << SORT_SHIFT) - 1;
+    private static final int TALON_MOVE = 1 << 15;
+
+    private final TranspositionTable table;
+    private SearchControl control;
+
+    final KlondikeState state = new KlondikeState();
+    final int[] path = new int[MAX_DEPTH];
+    private final int[] moveStack = new int[MAX_DEPTH * KlondikeState.MAX_MOVES];
+    private int bound;
+    private int pendingNodes;
+
+    Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Prepares a search from {@code start}, reached from the root through {@code prefix}.
+     *
+     * @return the path length at {@code start}
+     */
+    int load(SearchControl control, KlondikeState start, int[] prefix) {
+        this.control = control;
+        state.copyFrom(start);
+        System.arraycopy(prefix, 0, path, 0, prefix.length);
+        bound = Integer.MAX_VALUE;
+        pendingNodes = 0;
+        return prefix.length;
+    }
+
+    void run(int level, int depth) {
+        int count = expand(level, depth);
+        int offset = level * KlondikeState.MAX_MOVES;
+        for (int i = offset; i < offset + count; i++) {
+            int end = apply(moveStack[i], depth);
+            run(level + 1, end);
+            undo(end, depth);
+            if (control.shouldStop()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Visits the current node and, unless it can be cut off, writes the moves to search
+     * from it at {@code level} in the move stack, most promising first.
+     *
+     * @return the number of moves to search
+     */
+    int expand(int level, int depth) {
+        if (++pendingNodes == NODE_BATCH) {
+            flushNodes();
+        }
+        if (control.shouldStop()) {
+            return 0;
+        }
+        int foundationCards = state.foundationCardCount();
+        if (foundationCards == CardIds.DECK_SIZE) {
+            control.offerSolution(path, depth);
+            return 0;
+        }
+        bound = Math.min(bound, control.bestLength());
+        if (depth + CardIds.DECK_SIZE - foundationCards >= bound) {
+            return 0;
+        }
+        if (depth + CardIds.DECK_SIZE * 2 >= MAX_DEPTH) {
+            control.markCutOff();
+            return 0;
+        }
+        boolean exact = control.isFindShortest();
+        long key = exact ? state.zobristHash() : state.talonOrderHash();
+        if (!table.visit(key, exact ? depth : 0)) {
+            return 0;
+        }
+
+        int offset = level * KlondikeState.MAX_MOVES;
+        int safeMove = state.findSafeFoundationMove();
+        if (safeMove >= 0) {
+            moveStack[offset] = safeMove;
+            return 1;
+        }
+        return orderMoves(offset);
+    }
+
+    int move(int level, int index) {
+        return moveStack[level * KlondikeState.MAX_MOVES + index];
+    }
+
+    /**
+     * Applies a move from the move stack, expanding talon moves into their draws and
+     * refills, and records everything on the path.
+     *
+     * @return the path length after the move
+     */
+    int apply(int move, int depth) {
+        if ((move & TALON_MOVE) != 0) {
+            int card = state.talonCard(Moves.count(move));
+            while (state.topCard(KlondikeState.DISCARD) != card) {
+                int step = state.size(KlondikeState.STOCK) > 0
+                        ? Moves.DRAW
+                        : Moves.refill(state.size(KlondikeState.DISCARD));
+                path[depth++] = state.applyMove(step);
+            }
+            move = Moves.of(KlondikeState.DISCARD, Moves.to(move), 1);
+        }
+        path[depth] = state.applyMove(move);
+        return depth + 1;
+    }
+
+    void undo(int end, int depth) {
+        while (end > depth) {
+            state.undoMove(path[--end]);
+        }
+    }
+
+    void flushNodes() {
+        control.addNodes(pendingNodes);
+        pendingNodes = 0;
+    }
+
+    /**
+     * Generates the moves of the current position at {@code offset} in the move stack,
+     * drops the ones the search never needs and sorts the rest, most promising first.
+     */
+    private int orderMoves(int offset) {
+        int generated = state.generateMoves(moveStack, offset);
+        int count = 0;
+        for (int i = offset; i < offset + generated; i++) {
+            int move = moveStack[i];
+            int score = score(move);
+            if (score > 0) {
+                moveStack[offset + count++] = score << SORT_SHIFT | move;
+            }
+        }
+        count = addTalonMoves(offset, count);
+        for (int i = offset + 1; i < offset + count; i++) {
+            int key = moveStack[i];
+            int j = i - 1;
+            while (j >= offset && moveStack[j] < key) {
+                moveStack[j + 1] = moveStack[j];
+                j--;
+            }
+            moveStack[j + 1] = key;
+        }
+        for (int i = offset; i < offset + count; i++) {
+            moveStack[i] &= MOVE_MASK;
+        }
+        return count;
+    }
+
+    /**
+     * Adds a move for every talon card below the top of the discard that can be played,
+     * prioritised by the number of draws it takes to reach it.
+     */
+    private int addTalonMoves(int offset, int count) {
+        int discardSize = state.size(KlondikeState.DISCARD);
+        int talonSize = state.talonSize();
+        for (int i = 0; i < talonSize; i++) {
+            if (i == discardSize - 1) {
+                continue;
+            }
+            int card = state.talonCard(i);
+            int draws = i >= discardSize ? i - discardSize + 1 : talonSize - discardSize + i + 2;
+            int priority = Math.max(2, 50 - draws);
+            for (int f = KlondikeState.FIRST_FOUNDATION; f < KlondikeState.FIRST_TABLEAU; f++) {
+                if (state.canPlayOnFoundation(card, f)) {
+                    moveStack[offset + count++] = (priority + 10) << SORT_SHIFT | TALON_MOVE
+                            | Moves.of(KlondikeState.DISCARD, f, i);
+                    break;
+                }
+            }
+            for (int t = KlondikeState.FIRST_TABLEAU; t < KlondikeState.PILE_COUNT; t++) {
+                if (state.canPlayOnTableau(card, t) && (state.size(t) > 0 || t == firstEmptyTableau())) {
+                    moveStack[offset + count++] = priority << SORT_SHIFT | TALON_MOVE
+                            | Moves.of(KlondikeState.DISCARD, t, i);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Empty tableaus are interchangeable, so only moves to the first one are searched.
+     */
+    private int firstEmptyTableau() {
+        for (int t = KlondikeState.FIRST_TABLEAU; t < KlondikeState.PILE_COUNT; t++) {
+            if (state.size(t) == 0) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a positive priority, or 0 for moves the search skips
+     */
+    private int score(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        if (from == KlondikeState.STOCK || to == KlondikeState.STOCK) {
+            return 0;
+        }
+        if (KlondikeState.isTableau(to) && state.size(to) == 0 && to != firstEmptyTableau()) {
+            return 0;
+        }
+        if (KlondikeState.isFoundation(from)) {
+            return CardIds.rank(state.topCard(from)) > 2 ? 5 : 0;
+        }
+        if (KlondikeState.isFoundation(to)) {
+            return 100;
+        }
+        if (from == KlondikeState.DISCARD) {
+            return 60;
+        }
+        int baseIndex = state.size(from) - Moves.count(move);
+        int hidden = state.faceDownCount(from);
+        if (baseIndex == hidden) {
+            if (hidden > 0) {
+                return 80 + hidden;
+            }
+            return state.size(to) == 0 ? 0 : 40;
+        }
+        int freed = state.card(from, baseIndex - 1);
+        for (int f = KlondikeState.FIRST_FOUNDATION; f < KlondikeState.FIRST_TABLEAU; f++) {
+            if (state.canPlayOnFoundation(freed, f)) {
+                return 50;
+            }
+        }
+        return 0;
+    }
+}
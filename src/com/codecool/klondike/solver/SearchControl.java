@@ -0,0 +1,77 @@
+package com.codecool.klondike.solver;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State shared by every {@link Search} working on the same deal: the node budget, the best
+ * line found so far and the stop flags.
+ */
+final class SearchControl {
+    private final long maxNodes;
+    private final boolean findShortest;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile int bestLength = Integer.MAX_VALUE;
+    private int[] best = new int[0];
+    private volatile boolean aborted;
+    private volatile boolean cutOff;
+
+    SearchControl(long maxNodes, boolean findShortest) {
+        this.maxNodes = maxNodes;
+        this.findShortest = findShortest;
+    }
+
+    boolean isFindShortest() {
+        return findShortest;
+    }
+
+    void addNodes(long count) {
+        if (nodes.addAndGet(count) > maxNodes) {
+            aborted = true;
+        }
+    }
+
+    long nodes() {
+        return nodes.get();
+    }
+
+    int bestLength() {
+        return bestLength;
+    }
+
+    synchronized void offerSolution(int[] path, int length) {
+        if (length < bestLength) {
+            best = Arrays.copyOf(path, length);
+            bestLength = length;
+        }
+    }
+
+    /**
+     * Stops the search from any thread; it ends as if it had run out of nodes.
+     */
+    void abort() {
+        aborted = true;
+    }
+
+    void markCutOff() {
+        cutOff = true;
+    }
+
+    boolean shouldStop() {
+        return aborted || (!findShortest && bestLength != Integer.MAX_VALUE);
+    }
+
+    synchronized SolveResult toResult(long elapsedNanos, TranspositionTable table) {
+        SolveResult.Status status;
+        if (bestLength != Integer.MAX_VALUE) {
+            status = SolveResult.Status.WON;
+        } else if (aborted || cutOff) {
+            status = SolveResult.Status.UNKNOWN;
+        } else {
+            status = SolveResult.Status.NOT_WINNABLE;
+        }
+        boolean shortest = status == SolveResult.Status.WON && findShortest && !aborted && !cutOff;
+        return new SolveResult(status, best, shortest, nodes.get(), elapsedNanos,
+                table.occupied(), table.capacity());
+    }
+}
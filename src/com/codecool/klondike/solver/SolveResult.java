@@ -0,0 +1,96 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.model.Moves;
+
+public class SolveResult {
+    public enum Status {
+        /** A winning line was found */
+        WON,
+        /** The whole (pruned) move tree was searched without finding a win */
+        NOT_WINNABLE,
+        /** The node budget or depth limit was hit before a win was found */
+        UNKNOWN
+    }
+
+    private final Status status;
+    private final int[] solution;
+    private final boolean shortest;
+    private final long nodes;
+    private final long elapsedNanos;
+    private final long tableOccupied;
+    private final int tableCapacity;
+
+    SolveResult(Status status, int[] solution, boolean shortest, long nodes, long elapsedNanos,
+                long tableOccupied, int tableCapacity) {
+        this.status = status;
+        this.solution = solution;
+        this.shortest = shortest;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+        this.tableOccupied = tableOccupied;
+        this.tableCapacity = tableCapacity;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isWon() {
+        return status == Status.WON;
+    }
+
+    /**
+     * @return the winning line as moves returned by {@code KlondikeState.applyMove},
+     * or an empty array if no win was found
+     */
+    public int[] getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return true if the search finished, so no shorter line exists among the moves the
+     * solver considers
+     */
+    public boolean isShortest() {
+        return shortest;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    public long getTableOccupied() {
+        return tableOccupied;
+    }
+
+    public int getTableCapacity() {
+        return tableCapacity;
+    }
+
+    public double getPeakTableOccupancy() {
+        return (double) tableOccupied / tableCapacity;
+    }
+
+    public String describeSolution() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < solution.length; i++) {
+            sb.append(i + 1).append(". ").append(Moves.toString(solution[i])).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %d moves%s, %d nodes in %.1f ms (%.0f nodes/s), table %.1f%% full",
+                status, solution.length, shortest ? " (shortest)" : "", nodes, elapsedNanos / 1e6,
+                getNodesPerSecond(), getPeakTableOccupancy() * 100);
+    }
+}
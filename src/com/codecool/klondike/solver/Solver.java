@@ -0,0 +1,76 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+
+import java.util.Arrays;
+
+/**
+ * Single-threaded solver: runs one {@link Search} over a {@link LocalTranspositionTable}.
+ */
+public class Solver {
+    public static final int DEFAULT_TABLE_BITS = 20;
+    public static final long DEFAULT_MAX_NODES = 5_000_000;
+
+    private static final int[] NO_MOVES = new int[0];
+
+    private final TranspositionTable table;
+    private final Search search;
+    private final long maxNodes;
+    private final boolean findShortest;
+    private volatile SearchControl current;
+
+    public Solver() {
+        this(DEFAULT_TABLE_BITS, DEFAULT_MAX_NODES, false);
+    }
+
+    /**
+     * @param tableBits    log2 of the transposition table size
+     * @param maxNodes     node budget of one {@link #solve} call
+     * @param findShortest keep searching for shorter lines after the first win
+     */
+    public Solver(int tableBits, long maxNodes, boolean findShortest) {
+        this.table = new LocalTranspositionTable(tableBits);
+        this.search = new Search(table);
+        this.maxNodes = maxNodes;
+        this.findShortest = findShortest;
+    }
+
+    public SolveResult solve(KlondikeState start) {
+        long startTime = System.nanoTime();
+        SearchControl control = new SearchControl(maxNodes, findShortest);
+        current = control;
+        table.clear();
+        search.run(0, search.load(control, start, NO_MOVES));
+        search.flushNodes();
+        current = null;
+        return control.toResult(System.nanoTime() - startTime, table);
+    }
+
+    /**
+     * Stops the {@link #solve} call running on another thread, which then returns an
+     * {@link SolveResult.Status#UNKNOWN} result unless it had already found a win.
+     */
+    public void cancel() {
+        SearchControl control = current;
+        if (control != null) {
+            control.abort();
+        }
+    }
+
+    /**
+     * Solves the deals of consecutive seeds and prints the statistics of each search.
+     * Usage: {@code Solver [deals] [firstSeed] [--shortest]}
+     */
+    public static void main(String[] args) {
+        int deals = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        boolean shortest = Arrays.asList(args).contains("--shortest");
+
+        Solver solver = new Solver(DEFAULT_TABLE_BITS, DEFAULT_MAX_NODES, shortest);
+        for (long i = seed; i < seed + deals; i++) {
+            SolveResult result = solver.solve(DealGenerator.deal(i));
+            System.out.println("Seed " + i + ": " + result);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.codecool.klondike.solver;
+
+/**
+ * Bounded hash table from Zobrist keys to the shortest distance from the root at which
+ * a position was reached.
+ */
+public interface TranspositionTable {
+
+    /**
+     * Records that the position was reached at {@code depth}.
+     *
+     * @return false if it was already reached at the same or a smaller depth, in which
+     * case it does not need to be searched again
+     */
+    boolean visit(long key, int depth);
+
+    int capacity();
+
+    long occupied();
+
+    void clear();
+}
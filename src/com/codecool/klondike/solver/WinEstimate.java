@@ -0,0 +1,76 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.perf.ConfidenceInterval;
+
+/**
+ * The chance of winning a position as estimated by {@link WinEstimator}: the share of the
+ * sampled arrangements of the hidden cards that the solver could win, with a 95% Wilson
+ * score interval. Samples the solver gave up on count as not won.
+ */
+public final class WinEstimate {
+    static final WinEstimate NONE = new WinEstimate(0, 0, 0, false);
+
+    private final int samples;
+    private final int wins;
+    private final int undecided;
+    private final boolean exact;
+
+    WinEstimate(int samples, int wins, int undecided, boolean exact) {
+        this.samples = samples;
+        this.wins = wins;
+        this.undecided = undecided;
+        this.exact = exact;
+    }
+
+    /**
+     * @return the number of arrangements solved so far
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    /**
+     * @return the arrangements the solver ran out of nodes on
+     */
+    public int getUndecided() {
+        return undecided;
+    }
+
+    /**
+     * @return true if no card is hidden, so the one arrangement is the position itself
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    public double getProbability() {
+        return samples == 0 ? 0 : (double) wins / samples;
+    }
+
+    public double getLow() {
+        return exact && undecided == 0 && samples > 0
+                ? getProbability() : ConfidenceInterval.wilsonLow(wins, samples);
+    }
+
+    public double getHigh() {
+        return exact && undecided == 0 && samples > 0
+                ? getProbability() : ConfidenceInterval.wilsonHigh(wins, samples);
+    }
+
+    @Override
+    public String toString() {
+        if (samples == 0) {
+            return "no samples yet";
+        }
+        String undecidedText = undecided == 0 ? "" : String.format(", %d undecided", undecided);
+        if (exact) {
+            return String.format("%.0f%%, no card hidden%s", getProbability() * 100, undecidedText);
+        }
+        return String.format("%.0f%% (%.0f-%.0f%%) from %d samples%s", getProbability() * 100,
+                getLow() * 100, getHigh() * 100, samples, undecidedText);
+    }
+}
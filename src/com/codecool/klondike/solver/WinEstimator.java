@@ -0,0 +1,449 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.model.CardIds;
+import com.codecool.klondike.model.DealGenerator;
+import com.codecool.klondike.model.KlondikeState;
+import com.codecool.klondike.model.Moves;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates the chance of winning a position whose face-down cards are unknown. Each
+ * sample deals the cards the player has not seen into the face-down places at random,
+ * and worker threads, each with its own {@link Solver}, solve the samples with a small
+ * node budget; the share won is published as a {@link WinEstimate} after every sample,
+ * until {@value #MAX_SAMPLES} have been solved.
+ *
+ * A card counts as seen once it has been face up in a position given to the estimator,
+ * so the stock is known after it has gone round once.
+ *
+ * After a move the samples are kept and the move is played on each. Where a sample
+ * turns up another card than the real one, the real card is swapped in from wherever the
+ * sample had dealt it among the hidden cards; the hidden cards stay as randomly dealt as
+ * in a new sample, so only its result has to be worked out again. The other samples keep
+ * their result where it still holds: unwinnable stays unwinnable, and a win stays a win
+ * if its line starts with the move played. After an undo, wins are kept, as one more move
+ * in front of a winning line is still a win. Every other sample is solved again. A sample
+ * is only dropped if a card the player knows is somewhere else in it, which the moves
+ * given cannot cause.
+ *
+ * The solver sees the hidden cards of a sample, so the estimate is of how often a player
+ * who knew them would win: an upper bound on the real chance, less the samples the
+ * budget ran out on.
+ *
+ * {@link #reset}, {@link #played}, {@link #undone} and {@link #stop} are called by one
+ * thread; the listener runs on whichever thread changed the estimate.
+ */
+public class WinEstimator {
+    public static final int MAX_SAMPLES = 400;
+
+    private static final int TABLE_BITS = 18;
+    private static final long MAX_NODES = 100_000;
+    private static final int INCONSISTENT = -1;
+
+    private final Object lock = new Object();
+    private final List<Sample> samples = new ArrayList<>();
+    private final Solver[] solvers;
+    private final Thread[] workers;
+    private final Random random = new Random();
+
+    private final KlondikeState position = new KlondikeState();
+    private final byte[] packed = new byte[KlondikeState.PACKED_SIZE];
+    private final int[] hiddenSlots = new int[CardIds.DECK_SIZE];
+    private final int[] hiddenCards = new int[CardIds.DECK_SIZE];
+    private final boolean[] knownPlaces = new boolean[KlondikeState.PACKED_SIZE];
+    private final byte[] samplePacked = new byte[KlondikeState.PACKED_SIZE];
+    private final int[] placeOf = new int[CardIds.DECK_SIZE];
+    private int hiddenCount;
+    private long seen;
+    private boolean running;
+    private long generation;
+
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong repaired = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile WinEstimate estimate = WinEstimate.NONE;
+    private volatile Runnable listener;
+
+    private static final class Sample {
+        final KlondikeState state;
+        /** null until solved for the current position */
+        SolveResult.Status status;
+        boolean solving;
+        int[] line;
+        int lineStart;
+
+        Sample(KlondikeState state) {
+            this.state = state;
+        }
+    }
+
+    /**
+     * @param threads number of samples solved at once; the workers run at the lowest priority
+     */
+    public WinEstimator(int threads) {
+        solvers = new Solver[threads];
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Solver solver = new Solver(TABLE_BITS, MAX_NODES, false);
+            solvers[i] = solver;
+            workers[i] = new Thread(() -> work(solver), "win-estimator-" + i);
+            workers[i].setDaemon(true);
+            workers[i].setPriority(Thread.MIN_PRIORITY);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * @param listener called after every change of the estimate
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the estimate for the position last given, {@link WinEstimate#getSamples()} 0
+     * before the first sample is solved or while stopped
+     */
+    public WinEstimate getEstimate() {
+        return estimate;
+    }
+
+    public long getSamplesSolved() {
+        return solved.get();
+    }
+
+    public long getSamplesReused() {
+        return reused.get();
+    }
+
+    /**
+     * @return the samples that turned up another card than the real one and had it
+     * swapped in
+     */
+    public long getSamplesRepaired() {
+        return repaired.get();
+    }
+
+    public long getSamplesDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Starts over on a position not reached by a move from the last one, forgetting the
+     * cards seen so far.
+     */
+    public void reset(KlondikeState state) {
+        synchronized (lock) {
+            startChange(state);
+            samples.clear();
+            seen = 0;
+            running = true;
+            finishChange();
+        }
+        notifyListener();
+    }
+
+    /**
+     * @param state       the position after the move
+     * @param appliedMove the move as returned by {@link KlondikeState#applyMove}
+     */
+    public void played(KlondikeState state, int appliedMove) {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            startChange(state);
+            findHiddenCards();
+            int move = Moves.withoutFlag(appliedMove);
+            for (Iterator<Sample> it = samples.iterator(); it.hasNext(); ) {
+                Sample sample = it.next();
+                sample.state.applyMove(move);
+                int swapped = repair(sample.state);
+                if (swapped == INCONSISTENT) {
+                    it.remove();
+                    dropped.incrementAndGet();
+                } else if (swapped > 0) {
+                    sample.status = null;
+                    repaired.incrementAndGet();
+                } else if (sample.status == SolveResult.Status.WON && sample.lineStart < sample.line.length
+                        && Moves.withoutFlag(sample.line[sample.lineStart]) == move) {
+                    sample.lineStart++;
+                    reused.incrementAndGet();
+                } else if (sample.status == SolveResult.Status.NOT_WINNABLE) {
+                    reused.incrementAndGet();
+                } else {
+                    sample.status = null;
+                }
+            }
+            finishChange();
+        }
+        notifyListener();
+    }
+
+    /**
+     * @param state       the position after taking the move back
+     * @param appliedMove the move taken back, as returned by {@link KlondikeState#applyMove}
+     */
+    public void undone(KlondikeState state, int appliedMove) {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            startChange(state);
+            for (Sample sample : samples) {
+                sample.state.undoMove(appliedMove);
+                if (sample.status == SolveResult.Status.WON) {
+                    prepend(sample, appliedMove);
+                    reused.incrementAndGet();
+                } else {
+                    sample.status = null;
+                }
+            }
+            finishChange();
+        }
+        notifyListener();
+    }
+
+    /**
+     * Drops all samples and leaves the workers idle until the next {@link #reset}.
+     */
+    public void stop() {
+        synchronized (lock) {
+            generation++;
+            cancelSolvers();
+            samples.clear();
+            running = false;
+            estimate = WinEstimate.NONE;
+        }
+        notifyListener();
+    }
+
+    /**
+     * Stops the worker threads for good.
+     */
+    public void shutdown() {
+        stop();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void startChange(KlondikeState state) {
+        generation++;
+        cancelSolvers();
+        position.copyFrom(state);
+    }
+
+    private void finishChange() {
+        findHiddenCards();
+        publish();
+        lock.notifyAll();
+    }
+
+    private void cancelSolvers() {
+        for (Solver solver : solvers) {
+            solver.cancel();
+        }
+    }
+
+    /**
+     * Marks the face-up cards as seen and lists the places, as offsets into the packed
+     * position, of the face-down cards not seen yet; every other place is known.
+     */
+    private void findHiddenCards() {
+        for (int p = 0; p < KlondikeState.PILE_COUNT; p++) {
+            for (int i = position.faceDownCount(p); i < position.size(p); i++) {
+                seen |= 1L << position.card(p, i);
+            }
+        }
+        position.pack(packed);
+        hiddenCount = 0;
+        int offset = KlondikeState.PILE_COUNT * 2;
+        for (int p = 0; p < KlondikeState.PILE_COUNT; p++) {
+            for (int i = 0; i < position.size(p); i++) {
+                int card = position.card(p, i);
+                boolean hidden = i < position.faceDownCount(p) && (seen & 1L << card) == 0;
+                knownPlaces[offset + i] = !hidden;
+                if (hidden) {
+                    hiddenSlots[hiddenCount] = offset + i;
+                    hiddenCards[hiddenCount++] = card;
+                }
+            }
+            offset += position.size(p);
+        }
+    }
+
+    /**
+     * Puts every card the player knows where it is in the real position, swapping it with
+     * the card the sample has there. Both were hidden when the sample was dealt, so this
+     * deals the sample as if the card had been known then.
+     *
+     * @return the number of cards swapped, or {@link #INCONSISTENT} if a known card is at
+     * another known place of the sample
+     */
+    private int repair(KlondikeState sample) {
+        sample.pack(samplePacked);
+        int header = KlondikeState.PILE_COUNT * 2;
+        for (int offset = 0; offset < header; offset++) {
+            if (samplePacked[offset] != packed[offset]) {
+                return INCONSISTENT;
+            }
+        }
+        for (int offset = header; offset < KlondikeState.PACKED_SIZE; offset++) {
+            placeOf[samplePacked[offset]] = offset;
+        }
+        int swapped = 0;
+        for (int offset = header; offset < KlondikeState.PACKED_SIZE; offset++) {
+            byte card = packed[offset];
+            byte other = samplePacked[offset];
+            if (!knownPlaces[offset] || other == card) {
+                continue;
+            }
+            int place = placeOf[card];
+            if (knownPlaces[place]) {
+                return INCONSISTENT;
+            }
+            samplePacked[offset] = card;
+            samplePacked[place] = other;
+            placeOf[card] = offset;
+            placeOf[other] = place;
+            swapped++;
+        }
+        if (swapped > 0) {
+            sample.unpack(samplePacked);
+        }
+        return swapped;
+    }
+
+    private static void prepend(Sample sample, int appliedMove) {
+        if (sample.lineStart > 0 && sample.line[sample.lineStart - 1] == appliedMove) {
+            sample.lineStart--;
+            return;
+        }
+        int[] line = new int[sample.line.length - sample.lineStart + 1];
+        line[0] = appliedMove;
+        System.arraycopy(sample.line, sample.lineStart, line, 1, line.length - 1);
+        sample.line = line;
+        sample.lineStart = 0;
+    }
+
+    private void work(Solver solver) {
+        try {
+            while (true) {
+                Sample sample;
+                KlondikeState start;
+                long current;
+                synchronized (lock) {
+                    while ((sample = nextSample()) == null) {
+                        lock.wait();
+                    }
+                    sample.solving = true;
+                    start = new KlondikeState(sample.state);
+                    current = generation;
+                }
+                SolveResult result = solver.solve(start);
+                synchronized (lock) {
+                    sample.solving = false;
+                    if (generation != current) {
+                        continue;
+                    }
+                    sample.status = result.getStatus();
+                    sample.line = result.getSolution();
+                    sample.lineStart = 0;
+                    solved.incrementAndGet();
+                    publish();
+                }
+                notifyListener();
+            }
+        } catch (InterruptedException e) {
+            // shut down
+        }
+    }
+
+    /**
+     * @return a sample to solve next: one kept from an earlier position, else a new one
+     * while there are fewer than needed; null if there is nothing to do
+     */
+    private Sample nextSample() {
+        if (!running) {
+            return null;
+        }
+        for (Sample sample : samples) {
+            if (sample.status == null && !sample.solving) {
+                return sample;
+            }
+        }
+        if (samples.size() < (hiddenCount == 0 ? 1 : MAX_SAMPLES)) {
+            Sample sample = newSample();
+            samples.add(sample);
+            return sample;
+        }
+        return null;
+    }
+
+    private Sample newSample() {
+        byte[] arrangement = packed.clone();
+        for (int i = hiddenCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int card = hiddenCards[i];
+            hiddenCards[i] = hiddenCards[j];
+            hiddenCards[j] = card;
+        }
+        for (int i = 0; i < hiddenCount; i++) {
+            arrangement[hiddenSlots[i]] = (byte) hiddenCards[i];
+        }
+        KlondikeState state = new KlondikeState();
+        state.unpack(arrangement);
+        return new Sample(state);
+    }
+
+    private void publish() {
+        int count = 0;
+        int wins = 0;
+        int undecided = 0;
+        for (Sample sample : samples) {
+            if (sample.status == SolveResult.Status.WON) {
+                wins++;
+            } else if (sample.status == SolveResult.Status.UNKNOWN) {
+                undecided++;
+            } else if (sample.status == null) {
+                continue;
+            }
+            count++;
+        }
+        estimate = new WinEstimate(count, wins, undecided, hiddenCount == 0);
+    }
+
+    private void notifyListener() {
+        Runnable current = listener;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    /**
+     * Prints the estimate for a deal once a second, then whether the deal itself can be won.
+     * Usage: {@code WinEstimator [seed] [seconds] [threads]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : DealGenerator.randomSeed();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        KlondikeState deal = DealGenerator.deal(seed);
+        WinEstimator estimator = new WinEstimator(threads);
+        estimator.reset(deal);
+        for (int i = 1; i <= seconds; i++) {
+            Thread.sleep(1000);
+            System.out.println(i + " s: " + estimator.getEstimate());
+        }
+        estimator.shutdown();
+        System.out.println("Deal " + seed + ": " + new Solver().solve(deal));
+    }
+}
@@ -0,0 +1,303 @@
+package com.codecool.klondike.solver;
+
+import com.codecool.klondike.model.DealGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the seeds of deals the {@link Solver} has won ready to be dealt, so a game of a
+ * winnable deal starts without waiting for a search. {@link #take} returns at once: the
+ * oldest seed in the pool, or {@link #NO_SEED} when it has run dry.
+ *
+ * Producer threads at the lowest priority solve random deals with a bounded node budget
+ * and add the seeds of those won; deals they give up on are left out with the unwinnable
+ * ones. The first producer keeps the pool full; the others only join in while it is less
+ * than a quarter full, that is when games are being dealt faster than one thread refills
+ * it. All wait while there is nothing to do.
+ *
+ * The pool is written to a file after every seed taken and whenever it fills up, so a
+ * seed is never dealt twice and the next run starts with the pool as it was. File layout:
+ * the magic number and format version (two ints), the number of seeds (int), then the
+ * seeds (longs), oldest first.
+ */
+public class WinnableDealPool {
+    public static final Path DEFAULT_FILE = Paths.get(System.getProperty("user.home"), ".klondike", "winnable.seeds");
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final long NO_SEED = -1;
+
+    static final int MAGIC = 0x4B4C5750;
+    static final int VERSION = 1;
+
+    private static final int TABLE_BITS = 18;
+    private static final long MAX_NODES = 500_000;
+
+    private final Path file;
+    private final int capacity;
+    private final int lowWater;
+    private final ArrayDeque<Long> seeds;
+    private final Solver[] solvers;
+    private final Thread[] producers;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "deal-pool-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private boolean closed;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong dealsSolved = new AtomicLong();
+    private final AtomicLong seedsAdded = new AtomicLong();
+    private final AtomicLong solveNanos = new AtomicLong();
+
+    /**
+     * Loads the seeds left in the file, if any, and starts the producers.
+     *
+     * @param threads number of producers
+     */
+    public WinnableDealPool(Path file, int capacity, int threads) {
+        this.file = file;
+        this.capacity = capacity;
+        this.lowWater = Math.max(1, capacity / 4);
+        this.seeds = new ArrayDeque<>(capacity);
+        load();
+        solvers = new Solver[threads];
+        producers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int index = i;
+            Solver solver = new Solver(TABLE_BITS, MAX_NODES, false);
+            solvers[i] = solver;
+            producers[i] = new Thread(() -> produce(index, solver), "deal-pool-" + i);
+            producers[i].setDaemon(true);
+            producers[i].setPriority(Thread.MIN_PRIORITY);
+            producers[i].start();
+        }
+    }
+
+    /**
+     * @return the seed of a winnable deal, removed from the pool, or {@link #NO_SEED} if
+     * none is ready
+     */
+    public long take() {
+        long seed;
+        synchronized (this) {
+            Long next = seeds.pollFirst();
+            if (next == null) {
+                misses.incrementAndGet();
+                return NO_SEED;
+            }
+            seed = next;
+            notifyAll();
+        }
+        hits.incrementAndGet();
+        scheduleSave();
+        return seed;
+    }
+
+    public synchronized int size() {
+        return seeds.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the calls to {@link #take} that got a seed
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the calls to {@link #take} that found the pool empty
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getDealsSolved() {
+        return dealsSolved.get();
+    }
+
+    public long getSeedsAdded() {
+        return seedsAdded.get();
+    }
+
+    /**
+     * @return the seeds added per second spent solving, over all producers together: how
+     * fast one producer refills the pool
+     */
+    public double getRefillRate() {
+        long nanos = solveNanos.get();
+        return nanos == 0 ? 0 : seedsAdded.get() * 1e9 / nanos;
+    }
+
+    /**
+     * Stops the producers and writes the pool out, waiting at most the given time for the
+     * disk.
+     */
+    public void close(long timeout, TimeUnit unit) {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        for (int i = 0; i < producers.length; i++) {
+            solvers[i].cancel();
+            producers[i].interrupt();
+        }
+        scheduleSave();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void produce(int index, Solver solver) {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (!closed && seeds.size() >= (index == 0 ? capacity : lowWater)) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+                long seed = DealGenerator.randomSeed();
+                long start = System.nanoTime();
+                SolveResult result = solver.solve(DealGenerator.deal(seed));
+                solveNanos.addAndGet(System.nanoTime() - start);
+                dealsSolved.incrementAndGet();
+                if (!result.isWon()) {
+                    continue;
+                }
+                boolean full;
+                synchronized (this) {
+                    if (closed || seeds.size() >= capacity) {
+                        continue;
+                    }
+                    seeds.addLast(seed);
+                    full = seeds.size() == capacity;
+                }
+                seedsAdded.incrementAndGet();
+                if (full) {
+                    scheduleSave();
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("File shrank while reading it");
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a deal pool file");
+            }
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() < count * 8L) {
+                throw new IOException("Truncated deal pool file");
+            }
+            for (int i = 0; i < count && seeds.size() < capacity; i++) {
+                seeds.addLast(buffer.getLong());
+            }
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable deal pool: " + e.getMessage());
+        }
+    }
+
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::save);
+            } catch (RuntimeException e) {
+                // closed; the last save has been scheduled already
+                savePending.set(false);
+            }
+        }
+    }
+
+    private void save() {
+        savePending.set(false);
+        ByteBuffer bytes;
+        synchronized (this) {
+            bytes = ByteBuffer.allocate(12 + seeds.size() * 8);
+            bytes.putInt(MAGIC).putInt(VERSION).putInt(seeds.size());
+            for (long seed : seeds) {
+                bytes.putLong(seed);
+            }
+        }
+        bytes.flip();
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save the deal pool: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d seeds, %d hits, %d misses, %d of %d deals won, %.1f seeds/s per producer",
+                size(), capacity, getHits(), getMisses(), getSeedsAdded(), getDealsSolved(), getRefillRate());
+    }
+
+    /**
+     * Fills the pool in the file, printing the counters once a second, and then deals from
+     * it as fast as it allows for as long again.
+     * Usage: {@code WinnableDealPool [seconds] [threads] [file]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Path file = args.length > 2 ? Paths.get(args[2]) : DEFAULT_FILE;
+
+        WinnableDealPool pool = new WinnableDealPool(file, DEFAULT_CAPACITY, threads);
+        for (int i = 1; i <= seconds; i++) {
+            Thread.sleep(1000);
+            System.out.println(i + " s: " + pool);
+        }
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end) {
+            pool.take();
+            Thread.sleep(10);
+        }
+        System.out.println("Dealing every 10 ms: " + pool);
+        pool.close(2, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,82 @@
+package com.codecool.klondike.stats;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One finished game, won or given up, as kept in the statistics log.
+ *
+ * Each record takes {@value #SIZE} bytes, big-endian: the time the game ended in
+ * milliseconds since the epoch (long), the seed it was dealt from (long), how long it was
+ * played in milliseconds (int), the moves played (int), the cards on the foundations at
+ * the end (byte) and the flags (byte, bit 0 set for a win).
+ */
+public final class GameRecord {
+    public static final int SIZE = 8 + 8 + 4 + 4 + 1 + 1;
+
+    static final int DURATION_OFFSET = 16;
+    static final int MOVES_OFFSET = 20;
+    static final int FLAGS_OFFSET = 25;
+    static final int WON = 1;
+
+    private final long finishedAt;
+    private final long seed;
+    private final int durationMillis;
+    private final int moves;
+    private final int foundationCards;
+    private final boolean won;
+
+    public GameRecord(long finishedAt, long seed, long durationMillis, int moves, int foundationCards, boolean won) {
+        this.finishedAt = finishedAt;
+        this.seed = seed;
+        this.durationMillis = (int) Math.max(0, Math.min(Integer.MAX_VALUE, durationMillis));
+        this.moves = moves;
+        this.foundationCards = foundationCards;
+        this.won = won;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getMoves() {
+        return moves;
+    }
+
+    public int getFoundationCards() {
+        return foundationCards;
+    }
+
+    public boolean isWon() {
+        return won;
+    }
+
+    public void encode(ByteBuffer out) {
+        out.putLong(finishedAt)
+                .putLong(seed)
+                .putInt(durationMillis)
+                .putInt(moves)
+                .put((byte) foundationCards)
+                .put((byte) (won ? WON : 0));
+    }
+
+    /**
+     * Reads the record at the buffer's position and moves past it.
+     */
+    public static GameRecord decode(ByteBuffer in) {
+        long finishedAt = in.getLong();
+        long seed = in.getLong();
+        int durationMillis = in.getInt();
+        int moves = in.getInt();
+        int foundationCards = in.get();
+        boolean won = (in.get() & WON) != 0;
+        return new GameRecord(finishedAt, seed, durationMillis, moves, foundationCards, won);
+    }
+}
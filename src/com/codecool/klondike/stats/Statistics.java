@@ -0,0 +1,185 @@
+package com.codecool.klondike.stats;
+
+import com.codecool.klondike.perf.Histogram;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Running totals over the finished games: how many were played and won, the streaks, the
+ * fastest win and the distribution of win times. Adding a game updates a few fields and
+ * one histogram bucket, and every query takes the same time however many games there were,
+ * so the statistics screen never looks at the log.
+ *
+ * Win times are kept in milliseconds in a {@link Histogram}, so percentiles are exact to
+ * within 1%.
+ */
+public class Statistics {
+    private long games;
+    private long wins;
+    private long winMoves;
+    private int fewestWinMoves;
+    private int fastestWinMillis;
+    private long currentStreak;
+    private long longestWinStreak;
+    private long longestLosingStreak;
+    private Histogram winTimes = new Histogram();
+
+    public void add(GameRecord record) {
+        add(record.isWon(), record.getDurationMillis(), record.getMoves());
+    }
+
+    public void add(boolean won, int durationMillis, int moves) {
+        games++;
+        if (won) {
+            if (wins == 0 || moves < fewestWinMoves) {
+                fewestWinMoves = moves;
+            }
+            if (wins == 0 || durationMillis < fastestWinMillis) {
+                fastestWinMillis = durationMillis;
+            }
+            wins++;
+            winMoves += moves;
+            winTimes.record(durationMillis);
+            currentStreak = currentStreak > 0 ? currentStreak + 1 : 1;
+            longestWinStreak = Math.max(longestWinStreak, currentStreak);
+        } else {
+            currentStreak = currentStreak < 0 ? currentStreak - 1 : -1;
+            longestLosingStreak = Math.max(longestLosingStreak, -currentStreak);
+        }
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    /**
+     * @return the share of games won, between 0 and 1
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * @return the games won in a row at the end, or minus the games lost in a row
+     */
+    public long getCurrentStreak() {
+        return currentStreak;
+    }
+
+    public long getLongestWinStreak() {
+        return longestWinStreak;
+    }
+
+    public long getLongestLosingStreak() {
+        return longestLosingStreak;
+    }
+
+    /**
+     * @return the time of the fastest win, 0 if there is none
+     */
+    public int getFastestWinMillis() {
+        return fastestWinMillis;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the win time at the percentile, 0 if there is no win
+     */
+    public long getWinMillisAtPercentile(double percentile) {
+        return winTimes.getValueAtPercentile(percentile);
+    }
+
+    public int getFewestWinMoves() {
+        return fewestWinMoves;
+    }
+
+    public double getAverageWinMoves() {
+        return wins == 0 ? 0 : (double) winMoves / wins;
+    }
+
+    /**
+     * @return a few lines for people to read
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Games played: %d%n", games));
+        text.append(String.format("Games won: %d (%.1f%%)%n", wins, getWinRate() * 100));
+        text.append(String.format("Current streak: %s%n", currentStreak >= 0
+                ? plural(currentStreak, "win") : plural(-currentStreak, "loss")));
+        text.append(String.format("Longest streaks: %s, %s", plural(longestWinStreak, "win"),
+                plural(longestLosingStreak, "loss")));
+        if (wins > 0) {
+            text.append(String.format("%nWin time: fastest %s, median %s, 90%% within %s",
+                    formatDuration(fastestWinMillis), formatDuration(getWinMillisAtPercentile(50)),
+                    formatDuration(getWinMillisAtPercentile(90))));
+            text.append(String.format("%nMoves per win: fewest %d, average %.0f", fewestWinMoves, getAverageWinMoves()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the duration as minutes and seconds, or hours, minutes and seconds
+     */
+    public static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        return seconds < 3600
+                ? String.format("%d:%02d", seconds / 60, seconds % 60)
+                : String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    private static String plural(long count, String noun) {
+        return count + " " + (count == 1 ? noun : noun.endsWith("s") ? noun + "es" : noun + "s");
+    }
+
+    public Statistics copy() {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize());
+        encode(buffer);
+        buffer.flip();
+        try {
+            return decode(buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int encodedSize() {
+        return 8 * 3 + 4 * 2 + 8 * 3 + winTimes.encodedSize();
+    }
+
+    /**
+     * Writes the totals in the order of the fields, then the win time histogram.
+     */
+    public void encode(ByteBuffer out) {
+        out.putLong(games).putLong(wins).putLong(winMoves)
+                .putInt(fewestWinMoves).putInt(fastestWinMillis)
+                .putLong(currentStreak).putLong(longestWinStreak).putLong(longestLosingStreak);
+        winTimes.encode(out);
+    }
+
+    /**
+     * @throws IOException if the buffer does not hold statistics written by {@link #encode}
+     */
+    public static Statistics decode(ByteBuffer in) throws IOException {
+        Statistics statistics = new Statistics();
+        try {
+            statistics.games = in.getLong();
+            statistics.wins = in.getLong();
+            statistics.winMoves = in.getLong();
+            statistics.fewestWinMoves = in.getInt();
+            statistics.fastestWinMillis = in.getInt();
+            statistics.currentStreak = in.getLong();
+            statistics.longestWinStreak = in.getLong();
+            statistics.longestLosingStreak = in.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated statistics", e);
+        }
+        statistics.winTimes = Histogram.decode(in);
+        return statistics;
+    }
+}
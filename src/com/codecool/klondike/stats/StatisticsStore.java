@@ -0,0 +1,378 @@
+package com.codecool.klondike.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a {@link GameRecord} of every finished game in an append-only log, and the running
+ * {@link Statistics} over all of them in memory.
+ *
+ * {@link #record} updates the statistics at once and hands the record to a background
+ * writer, which appends all records waiting in one write; the FX thread never waits for
+ * the disk. Opening the store reads the statistics back from the last snapshot and only
+ * scans the records appended since, through memory-mapped chunks of the log when there
+ * are more than a few.
+ *
+ * Once the log holds {@value #COMPACT_THRESHOLD} records it is compacted: the statistics
+ * are written to a snapshot next to it and the log starts over empty. The log header
+ * carries a generation number and the snapshot the generation and number of records it
+ * covers, so a crash between replacing the two files never counts a game twice.
+ *
+ * Log layout: magic number and format version (two ints), generation (long), then the
+ * records. Snapshot layout: magic number and format version, the generation and number of
+ * records it covers (two longs), then the encoded {@link Statistics}.
+ */
+public class StatisticsStore {
+    public static final Path DEFAULT_FILE = Paths.get(System.getProperty("user.home"), ".klondike", "stats.log");
+
+    static final int MAGIC = 0x4B4C5354;
+    static final int SNAPSHOT_MAGIC = 0x4B4C5353;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8;
+    static final int SNAPSHOT_HEADER_SIZE = 4 + 4 + 8 + 8;
+
+    private static final long COMPACT_THRESHOLD = 100_000;
+    private static final int WRITE_BATCH = 1024;
+    private static final long MAP_THRESHOLD = 64 * 1024;
+    private static final long MAP_CHUNK = Integer.MAX_VALUE / GameRecord.SIZE * GameRecord.SIZE;
+
+    private final Path logFile;
+    private final Statistics statistics;
+    private final Queue<GameRecord> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "statistics-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Used by the writer thread only
+    private final Statistics written;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(GameRecord.SIZE * WRITE_BATCH);
+    private FileChannel log;
+    private long generation;
+    private long logRecords;
+
+    private StatisticsStore(Path logFile, Statistics statistics, FileChannel log, long generation, long logRecords) {
+        this.logFile = logFile;
+        this.statistics = statistics;
+        this.written = statistics.copy();
+        this.log = log;
+        this.generation = generation;
+        this.logRecords = logRecords;
+    }
+
+    /**
+     * Reads the statistics back from the snapshot and the log, starting an empty log if
+     * there is none. A record left half written by a crash is dropped.
+     *
+     * @throws IOException if the files cannot be read or are not statistics files
+     */
+    public static StatisticsStore open(Path logFile) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        FileChannel log = FileChannel.open(logFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            Snapshot snapshot = Snapshot.read(snapshotFileOf(logFile));
+            long generation;
+            if (log.size() == 0) {
+                generation = snapshot == null ? 0 : snapshot.generation + 1;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(generation);
+                header.flip();
+                while (header.hasRemaining()) {
+                    log.write(header, header.position());
+                }
+            } else {
+                generation = readHeader(log, logFile);
+            }
+            long records = (log.size() - HEADER_SIZE) / GameRecord.SIZE;
+            if (log.size() > HEADER_SIZE + records * GameRecord.SIZE) {
+                System.err.println("Dropping a partly written record at the end of " + logFile);
+                log.truncate(HEADER_SIZE + records * GameRecord.SIZE);
+            }
+            Statistics statistics = load(log, logFile, snapshot, generation, records);
+            StatisticsStore store = new StatisticsStore(logFile, statistics, log, generation, records);
+            System.out.printf("Statistics of %d games loaded in %.1f ms%n",
+                    statistics.getGames(), (System.nanoTime() - start) / 1e6);
+            if (records >= COMPACT_THRESHOLD) {
+                store.compact();
+            }
+            return store;
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the statistics of a log and its snapshot without changing either.
+     *
+     * @throws IOException if the files cannot be read or are not statistics files
+     */
+    public static Statistics read(Path logFile) throws IOException {
+        try (FileChannel log = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long generation = readHeader(log, logFile);
+            long records = (log.size() - HEADER_SIZE) / GameRecord.SIZE;
+            return load(log, logFile, Snapshot.read(snapshotFileOf(logFile)), generation, records);
+        }
+    }
+
+    /**
+     * @return the statistics including every game recorded so far; only for the thread
+     * calling {@link #record}
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Counts the game and schedules its record to be appended; returns without touching
+     * the disk.
+     */
+    public void record(GameRecord record) {
+        statistics.add(record);
+        pending.add(record);
+        if (drainScheduled.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+    }
+
+    /**
+     * Schedules the log to be folded into the snapshot after the records waiting are written.
+     */
+    public void compact() {
+        writer.execute(() -> {
+            try {
+                compactLog();
+            } catch (IOException e) {
+                System.err.println("Could not compact the statistics: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Writes the records waiting and closes the log, waiting at most the given time for the disk.
+     */
+    public void close(long timeout, TimeUnit unit) {
+        writer.execute(() -> {
+            try {
+                log.force(false);
+                log.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the statistics: " + e.getMessage());
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        try {
+            GameRecord record;
+            while ((record = pending.poll()) != null) {
+                record.encode(buffer);
+                written.add(record);
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+            flush();
+            if (logRecords >= COMPACT_THRESHOLD) {
+                compactLog();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write the statistics: " + e.getMessage());
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        long position = HEADER_SIZE + logRecords * GameRecord.SIZE;
+        int records = buffer.remaining() / GameRecord.SIZE;
+        while (buffer.hasRemaining()) {
+            position += log.write(buffer, position);
+        }
+        buffer.clear();
+        logRecords += records;
+    }
+
+    private void compactLog() throws IOException {
+        long start = System.nanoTime();
+        log.force(false);
+        ByteBuffer snapshot = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE + written.encodedSize());
+        snapshot.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(generation).putLong(logRecords);
+        written.encode(snapshot);
+        snapshot.flip();
+        replace(snapshotFileOf(logFile), snapshot);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(generation + 1);
+        header.flip();
+        log.close();
+        try {
+            replace(logFile, header);
+        } finally {
+            log = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        System.out.printf("Statistics log compacted: %d records folded into the snapshot in %.1f ms%n",
+                logRecords, (System.nanoTime() - start) / 1e6);
+        generation++;
+        logRecords = 0;
+    }
+
+    /**
+     * Writes a temporary file and renames it over the file, so the file is either the old
+     * one or the new one.
+     */
+    private static void replace(Path file, ByteBuffer bytes) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long readHeader(FileChannel log, Path logFile) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (log.size() >= HEADER_SIZE) {
+            readFully(log, header, 0);
+            header.flip();
+        }
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a statistics log, or written by another version: " + logFile);
+        }
+        return header.getLong();
+    }
+
+    /**
+     * Adds the records of the log the snapshot does not cover to the snapshot's statistics.
+     */
+    private static Statistics load(FileChannel log, Path logFile, Snapshot snapshot, long generation, long records)
+            throws IOException {
+        Statistics statistics = new Statistics();
+        long covered = 0;
+        if (snapshot != null && snapshot.generation == generation) {
+            statistics = snapshot.statistics;
+            covered = snapshot.records;
+        } else if (snapshot != null && snapshot.generation == generation - 1) {
+            statistics = snapshot.statistics;
+        } else if (snapshot != null || generation > 0) {
+            System.err.println("The statistics snapshot does not belong to " + logFile + "; counting the log only");
+        }
+        if (covered > records) {
+            throw new IOException("The statistics log is shorter than its snapshot: " + logFile);
+        }
+        scan(log, covered, records, statistics);
+        return statistics;
+    }
+
+    /**
+     * Adds the records from index {@code from} up to {@code to} to the statistics, mapping
+     * the log in chunks of up to 2 GB if the range is large and reading it otherwise.
+     */
+    private static void scan(FileChannel log, long from, long to, Statistics into) throws IOException {
+        long position = HEADER_SIZE + from * GameRecord.SIZE;
+        long end = HEADER_SIZE + to * GameRecord.SIZE;
+        if (end - position < MAP_THRESHOLD) {
+            ByteBuffer records = ByteBuffer.allocate((int) (end - position));
+            readFully(log, records, position);
+            add(records, records.capacity(), into);
+            return;
+        }
+        while (position < end) {
+            long length = Math.min(MAP_CHUNK, end - position);
+            add(log.map(FileChannel.MapMode.READ_ONLY, position, length), (int) length, into);
+            position += length;
+        }
+    }
+
+    private static void add(ByteBuffer records, int length, Statistics into) {
+        for (int offset = 0; offset + GameRecord.SIZE <= length; offset += GameRecord.SIZE) {
+            into.add((records.get(offset + GameRecord.FLAGS_OFFSET) & GameRecord.WON) != 0,
+                    records.getInt(offset + GameRecord.DURATION_OFFSET),
+                    records.getInt(offset + GameRecord.MOVES_OFFSET));
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("File shrank while reading it");
+            }
+        }
+    }
+
+    private static Path snapshotFileOf(Path logFile) {
+        return logFile.resolveSibling(logFile.getFileName() + ".snapshot");
+    }
+
+    private static final class Snapshot {
+        final long generation;
+        final long records;
+        final Statistics statistics;
+
+        Snapshot(long generation, long records, Statistics statistics) {
+            this.generation = generation;
+            this.records = records;
+            this.statistics = statistics;
+        }
+
+        /**
+         * @return the snapshot, or null if there is none
+         */
+        static Snapshot read(Path file) throws IOException {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < SNAPSHOT_HEADER_SIZE
+                    || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a statistics snapshot, or written by another version: " + file);
+            }
+            long generation = buffer.getLong();
+            long records = buffer.getLong();
+            return new Snapshot(generation, records, Statistics.decode(buffer));
+        }
+    }
+
+    /**
+     * Usage: {@code StatisticsStore [--compact] [log]}; prints the statistics of the log,
+     * by default the player's, after folding it into its snapshot if asked to.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean compact = args.length > 0 && args[0].equals("--compact");
+        Path file = args.length > (compact ? 1 : 0) ? Paths.get(args[compact ? 1 : 0]) : DEFAULT_FILE;
+        if (compact) {
+            StatisticsStore store = open(file);
+            store.compact();
+            store.close(1, TimeUnit.MINUTES);
+        }
+        long start = System.nanoTime();
+        Statistics statistics = read(file);
+        System.out.println(statistics.describe());
+        System.out.printf("Read in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+}